@@ -0,0 +1,82 @@
+package com.example.documentservice.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.ReturnableType;
+import org.hibernate.query.sqm.function.AbstractSqmSelfRenderingFunctionDescriptor;
+import org.hibernate.query.sqm.produce.function.StandardArgumentsValidators;
+import org.hibernate.query.sqm.produce.function.StandardFunctionArgumentTypeResolvers;
+import org.hibernate.query.sqm.produce.function.StandardFunctionReturnTypeResolvers;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.spi.SqlAppender;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.sql.ast.tree.expression.ColumnReference;
+import org.hibernate.sql.ast.tree.expression.Expression;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.List;
+
+/**
+ * Функции полнотекстового поиска PostgreSQL для JPQL и Criteria API.
+ * <p>
+ * Оператор {@code @@} нельзя выразить стандартными средствами JPA, поэтому он регистрируется как функция:
+ * <ul>
+ *     <li>{@code fts_match(document.id, query)} - {@code search_vector @@ to_tsquery('simple', query)}, использует GIN-индекс;</li>
+ *     <li>{@code fts_rank(document.id, query)} - релевантность для сортировки результатов.</li>
+ * </ul>
+ * Колонка documents.search_vector в сущности не отображается: вместе с текстом файлов она занимает
+ * сотни килобайт и читалась бы с каждым документом. Первый аргумент - любая колонка таблицы documents,
+ * из нее берется только псевдоним таблицы.
+ * <p>
+ * Подключается через META-INF/services, Hibernate находит его сам.
+ */
+public class FullTextSearchFunctionContributor implements FunctionContributor {
+
+    private static final String SEARCH_VECTOR_COLUMN = "search_vector";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        functionContributions.getFunctionRegistry().register("fts_match", new SearchVectorFunction(
+                "fts_match", "(", " @@ to_tsquery('simple', ", "))", types.resolve(StandardBasicTypes.BOOLEAN)));
+        functionContributions.getFunctionRegistry().register("fts_rank", new SearchVectorFunction(
+                "fts_rank", "ts_rank(", ", to_tsquery('simple', ", "))", types.resolve(StandardBasicTypes.DOUBLE)));
+    }
+
+    /**
+     * Выводит {@code prefix <псевдоним>.search_vector infix <запрос> suffix}.
+     */
+    private static final class SearchVectorFunction extends AbstractSqmSelfRenderingFunctionDescriptor {
+
+        private final String prefix;
+        private final String infix;
+        private final String suffix;
+
+        private SearchVectorFunction(String name, String prefix, String infix, String suffix, BasicType<?> returnType) {
+            super(name, StandardArgumentsValidators.exactly(2),
+                    StandardFunctionReturnTypeResolvers.invariant(returnType),
+                    StandardFunctionArgumentTypeResolvers.NULL);
+            this.prefix = prefix;
+            this.infix = infix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public void render(SqlAppender sqlAppender, List<? extends SqlAstNode> arguments,
+                           ReturnableType<?> returnType, SqlAstTranslator<?> walker) {
+            ColumnReference column = ((Expression) arguments.get(0)).getColumnReference();
+            if (column == null || column.getQualifier() == null) {
+                throw new IllegalArgumentException(getName() + " expects a column of the documents table as its first argument");
+            }
+            sqlAppender.appendSql(prefix);
+            sqlAppender.appendSql(column.getQualifier());
+            sqlAppender.appendSql('.');
+            sqlAppender.appendSql(SEARCH_VECTOR_COLUMN);
+            sqlAppender.appendSql(infix);
+            arguments.get(1).accept(walker);
+            sqlAppender.appendSql(suffix);
+        }
+    }
+}
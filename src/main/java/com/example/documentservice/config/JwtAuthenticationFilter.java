@@ -2,12 +2,14 @@ package com.example.documentservice.config;
 
 import com.example.documentservice.service.JwtService;
 import com.example.documentservice.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
@@ -19,6 +21,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -41,30 +44,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        userName = jwtService.extractUserName(jwt);
+        // Токен разбирается и проверяется один раз, дальше работаем с его claims
+        final Claims claims = jwtService.extractAllClaims(jwt);
+        userName = claims.getSubject();
 
         if (StringUtils.isNotEmpty(userName) && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails = userService.userDetailsService().loadUserByUsername(userName);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (jwtService.isTokenValid(claims, userDetails)) {
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 context.setAuthentication(authenticationToken);
                 SecurityContextHolder.setContext(context);
-
-                // 🔎 Логирование — проверяем, что в контексте появился пользователь
-                System.out.println("✅ JWT authentication success for user: " + userName);
+                log.debug("JWT authentication succeeded for user '{}'", userName);
             } else {
-                System.out.println("❌ JWT is invalid for user: " + userName);
+                log.debug("JWT is invalid for user '{}'", userName);
             }
-        } else {
-            System.out.println("⚠️ No username extracted OR context already has authentication");
         }
 
-        // 🔎 Всегда логируем текущее состояние SecurityContext
-        System.out.println("🔎 Current SecurityContext auth = " + SecurityContextHolder.getContext().getAuthentication());
-
         filterChain.doFilter(request, response);
     }
 }
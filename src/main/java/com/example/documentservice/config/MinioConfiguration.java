@@ -2,11 +2,13 @@ package com.example.documentservice.config;
 
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Slf4j
 @Configuration
@@ -24,7 +26,15 @@ public class MinioConfiguration {
     @Value("${minio.bucket.name}")
     private String bucketName;
 
+    // Адрес MinIO, доступный клиентам снаружи (для presigned URL). По умолчанию совпадает с minio.url
+    @Value("${minio.public-url:${minio.url}}")
+    private String publicUrl;
+
+    @Value("${minio.region:us-east-1}")
+    private String region;
+
     @Bean
+    @Primary
     public MinioClient minioClient() {
         MinioClient minioClient;
         try {
@@ -59,4 +69,30 @@ public class MinioConfiguration {
 
         return minioClient;
     }
+
+    /**
+     * Клиент только для подписи ссылок (presigned URL). Подпись включает хост, поэтому клиент
+     * настроен на публичный адрес MinIO. Регион задан явно, чтобы подпись не требовала сетевого запроса.
+     */
+    @Bean
+    public MinioClient presignMinioClient() {
+        return MinioClient.builder()
+                .endpoint(publicUrl)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
+
+    /**
+     * Асинхронный клиент нужен для низкоуровневого multipart API (создание загрузки,
+     * отправка отдельных частей, завершение и отмена), которого нет в синхронном MinioClient.
+     * Bucket к этому моменту уже проверен бином minioClient.
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient() {
+        return MinioAsyncClient.builder()
+                .endpoint(url)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
 }
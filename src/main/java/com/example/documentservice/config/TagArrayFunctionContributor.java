@@ -0,0 +1,27 @@
+package com.example.documentservice.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Операторы массивов PostgreSQL для фильтра по тегам (колонка documents.tags типа text[]):
+ * <ul>
+ *     <li>{@code tags_any(tags, values)} - {@code tags && values}, есть хотя бы один из тегов;</li>
+ *     <li>{@code tags_all(tags, values)} - {@code tags @> values}, есть все теги.</li>
+ * </ul>
+ * Оба оператора обслуживает GIN-индекс idx_documents_tags. Подключается через META-INF/services.
+ */
+public class TagArrayFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        // Параметр приводится к text[] явно: драйвер может передать массив как varchar[]
+        functionContributions.getFunctionRegistry().registerPattern(
+                "tags_any", "(?1 && cast(?2 as text[]))", types.resolve(StandardBasicTypes.BOOLEAN));
+        functionContributions.getFunctionRegistry().registerPattern(
+                "tags_all", "(?1 @> cast(?2 as text[]))", types.resolve(StandardBasicTypes.BOOLEAN));
+    }
+}
@@ -1,7 +1,17 @@
 package com.example.documentservice.controller;
 
+import com.example.documentservice.dto.BulkUploadResponse;
+import com.example.documentservice.dto.ContentHashUploadRequest;
+import com.example.documentservice.dto.CursorPage;
+import com.example.documentservice.dto.DirectUploadCommitRequest;
+import com.example.documentservice.dto.DirectUploadRequest;
+import com.example.documentservice.dto.DirectUploadResponse;
 import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.dto.DocumentFacets;
+import com.example.documentservice.dto.DocumentShareDto;
+import com.example.documentservice.dto.DownloadMode;
 import com.example.documentservice.dto.FileDownloadDto;
+import com.example.documentservice.dto.TagMatchMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,22 +21,30 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.core.io.Resource;
 import com.example.documentservice.entity.User;
 import com.example.documentservice.service.DocumentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Set;
 
 @RestController
@@ -37,6 +55,8 @@ import java.util.Set;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final StreamingUploadReader streamingUploadReader;
+    private final FileDownloadResponseFactory downloadResponseFactory;
 
     @Operation(summary = "Загрузить новый документ",
             description = "Загружает файл, сохраняет его в хранилище и создает запись с метаданными в базе.")
@@ -49,6 +69,83 @@ public class DocumentController {
         return ResponseEntity.ok(documentDto);
     }
 
+    @Operation(summary = "Потоковая загрузка документа",
+            description = "Передает тело запроса напрямую в хранилище, не сохраняя его во временный файл. " +
+                          "Тело - сам файл (метаданные в заголовках X-File-Name, X-Category, X-Tags) " +
+                          "или multipart/form-data, где поля category/tags идут перед частью file.")
+    @PostMapping(value = "/stream", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<DocumentDto> uploadDocumentStream(HttpServletRequest request,
+                                                            @AuthenticationPrincipal User user) throws IOException {
+        DocumentDto documentDto = streamingUploadReader.upload(request, user);
+        return ResponseEntity.ok(documentDto);
+    }
+
+    @Operation(summary = "Пакетная загрузка документов из ZIP-архива",
+            description = "Тело запроса - ZIP-архив, он читается потоком. Каждый файл архива становится документом, " +
+                          "категория и теги для всех файлов задаются заголовками X-Category и X-Tags. " +
+                          "Ответ содержит результат по каждому файлу: ошибка одного файла не отменяет остальные. " +
+                          "Документы сохраняются пачками по мере чтения архива.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Архив обработан, результат по каждому файлу"),
+            @ApiResponse(responseCode = "400", description = "Тело запроса не является ZIP-архивом или в нем нет файлов"),
+            @ApiResponse(responseCode = "413", description = "Архив превышает ограничения storage.upload.bulk.max-*; " +
+                                                             "пачки, сохраненные до превышения, остаются")
+    })
+    @PostMapping(value = "/bulk", consumes = {"application/zip", "application/x-zip-compressed",
+                                               MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<BulkUploadResponse> uploadDocumentArchive(HttpServletRequest request,
+                                                                    @AuthenticationPrincipal User user) throws IOException {
+        BulkUploadResponse response = streamingUploadReader.uploadArchive(request, user);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Загрузить документ по хешу содержимого",
+            description = "Клиент передает SHA-256 и размер файла. Если такое содержимое уже хранится, документ " +
+                          "создается сразу, без передачи байт (201). Иначе ответ 204 - файл нужно загрузить обычным способом.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Содержимое найдено, документ создан"),
+            @ApiResponse(responseCode = "204", description = "Содержимое не найдено, нужна обычная загрузка"),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации")
+    })
+    @PostMapping(value = "/preflight", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DocumentDto> uploadDocumentByHash(@Valid @RequestBody ContentHashUploadRequest request,
+                                                            @AuthenticationPrincipal User user) {
+        return documentService.uploadDocumentByHash(request, user)
+                .map(documentDto -> ResponseEntity.status(HttpStatus.CREATED).body(documentDto))
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @Operation(summary = "Начать прямую загрузку в хранилище",
+            description = "Создает документ в статусе PENDING и возвращает подписанные PUT-ссылки. " +
+                          "Небольшой файл загружается одним запросом по единственной ссылке, крупный - частями " +
+                          "размера partSize, каждая по своей ссылке. После загрузки нужно вызвать commit.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Ссылки для загрузки выданы"),
+            @ApiResponse(responseCode = "400", description = "Ошибка валидации")
+    })
+    @PostMapping(value = "/uploads", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DirectUploadResponse> initiateDirectUpload(@Valid @RequestBody DirectUploadRequest request,
+                                                                     @AuthenticationPrincipal User user) {
+        DirectUploadResponse response = documentService.initiateDirectUpload(request, user);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @Operation(summary = "Подтвердить прямую загрузку",
+            description = "Проверяет загруженный объект (размер и, если передан, ETag) и делает документ доступным.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Документ подтвержден"),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+            @ApiResponse(responseCode = "404", description = "Незавершенная загрузка не найдена или истекла")
+    })
+    @PostMapping("/uploads/{id}/commit")
+    public ResponseEntity<DocumentDto> commitDirectUpload(@Parameter(description = "ID документа из ответа на начало загрузки") @PathVariable Long id,
+                                                          @RequestBody(required = false) DirectUploadCommitRequest request,
+                                                          @AuthenticationPrincipal User user) {
+        String etag = request != null ? request.getEtag() : null;
+        DocumentDto documentDto = documentService.commitDirectUpload(id, etag, user);
+        return ResponseEntity.ok(documentDto);
+    }
+
     @Operation(summary = "Получить список документов пользователя",
             description = "Возвращает постраничный список документов текущего пользователя с возможностью фильтрации и поиска.",
             responses = {
@@ -60,31 +157,133 @@ public class DocumentController {
             @AuthenticationPrincipal User user,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) Set<String> tags,
+            @Parameter(description = "ANY - документ с любым из тегов, ALL - со всеми тегами")
+            @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
             @RequestParam(required = false) String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<DocumentDto> documents = documentService.getAllUserDocuments(user, category, tags, query, pageable);
+        Page<DocumentDto> documents = documentService.getAllUserDocuments(user, category, tags, tagMatch, query, pageable);
         return ResponseEntity.ok(documents);
     }
 
+    @Operation(summary = "Получить список документов пользователя по курсору",
+            description = "Постраничное чтение без OFFSET и COUNT: документы от новых к старым, "
+                          + "следующая страница запрашивается по nextCursor из предыдущего ответа.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница документов получена"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный курсор"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен")
+            })
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<DocumentDto>> scrollUserDocuments(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
+            @RequestParam(required = false) String query,
+            @Parameter(description = "nextCursor из предыдущего ответа; без него - первая страница")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(documentService.getAllUserDocuments(user, category, tags, tagMatch, query, cursor, size));
+    }
+
+    @Operation(summary = "Получить все документы по курсору (только для администратора)")
+    @GetMapping("/admin/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPage<DocumentDto>> scrollAllDocuments(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(documentService.getAllDocumentsForAdmin(cursor, size, category, tags, tagMatch, query, username));
+    }
+
+    @Operation(summary = "Поиск по содержимому документов",
+            description = "Полнотекстовый поиск по имени, категории, тегам и тексту файлов (PDF, Office и др.) "
+                          + "среди своих документов и расшаренных текущему пользователю. Результаты отсортированы "
+                          + "по релевантности. Текст файла индексируется в фоне после загрузки.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Результаты поиска получены"),
+                    @ApiResponse(responseCode = "400", description = "В запросе нет ни одного слова")
+            })
+    @GetMapping("/search")
+    public ResponseEntity<Page<DocumentDto>> searchDocuments(
+            @AuthenticationPrincipal User user,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(documentService.searchDocuments(user, q, PageRequest.of(page, size)));
+    }
+
+    @Operation(summary = "Счетчики по категориям и тегам документов пользователя",
+            description = "Сколько документов пользователя подходит под фильтр для каждой категории и каждого тега. "
+                          + "Счетчик категорий не учитывает выбранную категорию, счетчик тегов - выбранные теги. "
+                          + "Значения кэшируются на несколько секунд.")
+    @GetMapping("/facets")
+    public ResponseEntity<DocumentFacets> getUserDocumentFacets(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
+            @RequestParam(required = false) String query) {
+        return ResponseEntity.ok(documentService.getUserDocumentFacets(user, category, tags, tagMatch, query));
+    }
+
+    @Operation(summary = "Счетчики по категориям и тегам всех документов (только для администратора)")
+    @GetMapping("/admin/facets")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<DocumentFacets> getAllDocumentFacets(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String username) {
+        return ResponseEntity.ok(documentService.getDocumentFacetsForAdmin(category, tags, tagMatch, query, username));
+    }
+
+    @Operation(summary = "Получить документы, расшаренные текущему пользователю, по курсору")
+    @GetMapping("/shared/scroll")
+    public ResponseEntity<CursorPage<DocumentDto>> scrollSharedWithMe(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(documentService.getSharedWithMe(user, cursor, size));
+    }
+
+    @Operation(summary = "Получить документы, отправленные текущим пользователем, по курсору")
+    @GetMapping("/sent/scroll")
+    public ResponseEntity<CursorPage<DocumentShareDto>> scrollSentByMe(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(documentService.getSentByMe(user, cursor, size));
+    }
+
     @Operation(summary = "Скачать документ по ID")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Файл успешно отдан"),
+            @ApiResponse(responseCode = "206", description = "Отдан запрошенный диапазон (Range)"),
+            @ApiResponse(responseCode = "302", description = "Редирект на подписанную ссылку хранилища"),
+            @ApiResponse(responseCode = "416", description = "Запрошенный диапазон за пределами файла"),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
             @ApiResponse(responseCode = "404", description = "Документ не найден")
     })
     @GetMapping("/{id}/download")
     public ResponseEntity<Resource> downloadDocument(@Parameter(description = "ID документа для скачивания") @PathVariable Long id,
+                                                     @Parameter(description = "Способ отдачи: PROXY, REDIRECT или AUTO (по умолчанию - из настроек)")
+                                                     @RequestParam(required = false) DownloadMode mode,
+                                                     @RequestHeader HttpHeaders headers,
                                                      @AuthenticationPrincipal User user) {
 
-        FileDownloadDto fileDto = documentService.downloadDocument(id, user);
+        FileDownloadDto fileDto = documentService.downloadDocument(id, user, mode);
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"" + fileDto.fileName() + "\"")
-                .contentType(fileDto.mediaType())
-                .body(fileDto.resource());
+        // Поддерживает Range / If-Range: 206 для одного или нескольких диапазонов
+        return downloadResponseFactory.create(fileDto, headers);
     }
 
     @Operation(summary = "Удалить документ по ID")
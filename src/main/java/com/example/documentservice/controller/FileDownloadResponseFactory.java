@@ -0,0 +1,336 @@
+package com.example.documentservice.controller;
+
+import com.example.documentservice.dto.FileDownloadDto;
+import com.example.documentservice.service.StorageObjectResource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Формирует HTTP-ответ для скачивания файла с поддержкой Range / If-Range.
+ * <p>
+ * Ответ содержит валидаторы ETag и Last-Modified. Условные запросы (If-None-Match / If-Modified-Since)
+ * проверяются по метаданным документа до обращения к хранилищу: на 304 поток вообще не открывается.
+ * <p>
+ * Поддерживаются одиночные (206 + Content-Range) и множественные (206 + multipart/byteranges) диапазоны.
+ * Каждый диапазон запрашивается из хранилища отдельно через offset/length, поэтому байты,
+ * которые клиент не просил, из хранилища не читаются. Пересекающиеся и смежные диапазоны объединяются;
+ * если и после этого их больше {@link #MAX_RANGES}, Range игнорируется и файл отдается целиком.
+ * <p>
+ * Объект в хранилище открывается до того, как ответ возвращается контейнеру: если его нет, клиент получает
+ * ошибку, а не заголовки 200/206 с оборванным телом. На HEAD объект не открывается вовсе.
+ * <p>
+ * Если сервис подготовил подписанную ссылку на хранилище, вместо тела отдается 302 на нее.
+ * <p>
+ * Если у объекта есть локальная копия (дисковый кэш) и контейнер поддерживает sendfile, тело не пишется
+ * из JVM: Tomcat сам передает файл в сокет через FileChannel.transferTo (zero-copy).
+ * <p>
+ * Тело всегда отдается как InputStreamResource: для него Spring MVC не применяет собственную
+ * обработку Range поверх нашей (и не пытается вычислить длину, прочитав поток).
+ */
+@Component
+public class FileDownloadResponseFactory {
+
+    private static final String CRLF = "\r\n";
+
+    // Больше диапазонов в одном ответе не отдаем: каждый - отдельный запрос к хранилищу
+    static final int MAX_RANGES = 16;
+
+    // Атрибуты запроса, через которые Tomcat принимает файл для отдачи через sendfile
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    public ResponseEntity<Resource> create(FileDownloadDto file, HttpHeaders requestHeaders) {
+        if (isNotModified(requestHeaders, file)) {
+            HttpHeaders headers = new HttpHeaders();
+            setValidators(headers, file);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        // Режим редиректа: права уже проверены, байты клиент заберет напрямую из хранилища
+        if (file.redirectUrl() != null) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(file.redirectUrl())
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(file.fileName(), StandardCharsets.UTF_8)
+                .build());
+        setValidators(headers, file);
+
+        long length = file.contentLength();
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        // Range игнорируется, если файл изменился с момента, указанного в If-Range
+        if (!StringUtils.hasText(rangeHeader) || length == 0
+            || !ifRangeMatches(requestHeaders.getFirst(HttpHeaders.IF_RANGE), file)) {
+            return fullResponse(file, headers);
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Синтаксически неверный Range по RFC 9110 можно просто проигнорировать
+            return fullResponse(file, headers);
+        }
+        if (ranges.isEmpty()) {
+            return fullResponse(file, headers);
+        }
+
+        List<long[]> satisfiable = satisfiableRanges(ranges, length);
+        if (satisfiable.isEmpty()) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+        }
+        if (satisfiable.size() > MAX_RANGES) {
+            // RFC 9110 разрешает проигнорировать Range; целиком файл обходится дешевле сотни запросов к хранилищу
+            return fullResponse(file, headers);
+        }
+
+        if (satisfiable.size() == 1) {
+            long start = satisfiable.get(0)[0];
+            long end = satisfiable.get(0)[1];
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            headers.setContentType(file.mediaType());
+            headers.setContentLength(end - start + 1);
+            if (isHeadRequest() || trySendfile(file.resource(), start, end - start + 1)) {
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).build();
+            }
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .body(new InputStreamResource(openRange(file.resource(), start, end - start + 1)));
+        }
+
+        return multipartResponse(file, headers, satisfiable);
+    }
+
+    private ResponseEntity<Resource> fullResponse(FileDownloadDto file, HttpHeaders headers) {
+        headers.setContentType(file.mediaType());
+        headers.setContentLength(file.contentLength());
+        if (isHeadRequest() || trySendfile(file.resource(), 0, file.contentLength())) {
+            return ResponseEntity.ok().headers(headers).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(new InputStreamResource(file.resource().getInputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ResponseEntity<Resource> multipartResponse(FileDownloadDto file, HttpHeaders headers, List<long[]> ranges) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        long length = file.contentLength();
+
+        // Собираем тело multipart/byteranges из заголовков частей и потоков диапазонов. Первый диапазон
+        // открывается сразу (объект точно есть), остальные - когда до них дойдет запись
+        List<InputStream> parts = new ArrayList<>();
+        long contentLength = 0;
+        boolean head = isHeadRequest();
+        for (long[] range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                                 + HttpHeaders.CONTENT_TYPE + ": " + file.mediaType() + CRLF
+                                 + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + CRLF
+                                 + CRLF).getBytes(StandardCharsets.US_ASCII);
+            long count = range[1] - range[0] + 1;
+            parts.add(new ByteArrayInputStream(partHeader));
+            if (!head) {
+                parts.add(parts.size() == 1
+                        ? openRange(file.resource(), range[0], count)
+                        : openLazyRange(file.resource(), range[0], count));
+            }
+            contentLength += partHeader.length + count;
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        parts.add(new ByteArrayInputStream(closing));
+        contentLength += closing.length;
+
+        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+        headers.setContentLength(contentLength);
+        if (head) {
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).build();
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(new InputStreamResource(new SequenceInputStream(Collections.enumeration(parts))));
+    }
+
+    /**
+     * Выполнимые диапазоны в порядке возрастания; пересекающиеся и смежные объединены в один.
+     * @return Пары [первый байт, последний байт]; пустой список, если ни один диапазон не выполним
+     */
+    static List<long[]> satisfiableRanges(List<HttpRange> ranges, long length) {
+        List<long[]> satisfiable = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            try {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start <= end) {
+                    satisfiable.add(new long[]{start, end});
+                }
+            } catch (IllegalArgumentException e) {
+                // Диапазон за пределами файла - пропускаем, остальные еще могут быть выполнимы
+            }
+        }
+        satisfiable.sort(Comparator.comparingLong(range -> range[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : satisfiable) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static boolean isHeadRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+               && "HEAD".equals(attributes.getRequest().getMethod());
+    }
+
+    /**
+     * Передает Tomcat локальный файл для отдачи через sendfile. Ответ при этом возвращается без тела,
+     * с заранее выставленным Content-Length.
+     * @return true, если файл будет отдан контейнером
+     */
+    private boolean trySendfile(Resource resource, long offset, long count) {
+        if (!(resource instanceof StorageObjectResource storageResource)
+            || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        // Tomcat не поддерживает sendfile, например, для HTTPS-соединений
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            return false;
+        }
+        Optional<Path> localFile = storageResource.getLocalFile();
+        if (localFile.isEmpty()) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, localFile.get().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, offset);
+        request.setAttribute(SENDFILE_END_ATTR, offset + count);
+        return true;
+    }
+
+    private InputStream openRange(Resource resource, long offset, long count) {
+        if (resource instanceof StorageObjectResource storageResource) {
+            return storageResource.getInputStream(offset, count);
+        }
+        try {
+            InputStream in = resource.getInputStream();
+            in.skipNBytes(offset);
+            return BoundedInputStream.builder().setInputStream(in).setMaxCount(count).get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private InputStream openLazyRange(Resource resource, long offset, long count) {
+        if (resource instanceof StorageObjectResource storageResource) {
+            return storageResource.getLazyInputStream(offset, count);
+        }
+        return openRange(resource, offset, count);
+    }
+
+    private void setValidators(HttpHeaders headers, FileDownloadDto file) {
+        if (file.etag() != null) {
+            headers.setETag(quote(file.etag()));
+        }
+        headers.setLastModified(file.lastModified());
+        // Документы доступны только владельцу: браузер может хранить копию, но обязан ее перепроверять
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+    }
+
+    /**
+     * Проверка условного запроса по RFC 9110: If-None-Match имеет приоритет, If-Modified-Since
+     * учитывается только при его отсутствии.
+     */
+    private boolean isNotModified(HttpHeaders requestHeaders, FileDownloadDto file) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            if (file.etag() == null) {
+                return false;
+            }
+            // Для If-None-Match используется слабое сравнение: префикс W/ не учитывается
+            String current = quote(file.etag());
+            for (String candidate : ifNoneMatch) {
+                String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+                if ("*".equals(tag) || current.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = requestHeaders.getIfModifiedSince();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // Дата в HTTP-заголовках с точностью до секунды
+        return ifModifiedSince >= 0 && file.lastModified().getEpochSecond() <= ifModifiedSince / 1000;
+    }
+
+    private boolean ifRangeMatches(String ifRange, FileDownloadDto file) {
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            // Для If-Range допустимо только строгое сравнение, слабый валидатор никогда не совпадает
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return file.etag() != null && quote(file.etag()).equals(ifRange);
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == file.lastModified().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String quote(String etag) {
+        return "\"" + etag + "\"";
+    }
+}
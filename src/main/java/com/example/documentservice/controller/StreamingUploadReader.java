@@ -0,0 +1,203 @@
+package com.example.documentservice.controller;
+
+import com.example.documentservice.dto.BulkUploadResponse;
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.entity.User;
+import com.example.documentservice.exception.InvalidRequestException;
+import com.example.documentservice.service.DocumentService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Читает тело запроса на загрузку как поток и передает его в хранилище без буферизации на диск.
+ * <p>
+ * Поддерживаются два формата:
+ * <ul>
+ *     <li>сырое тело запроса (например, application/octet-stream), метаданные передаются в заголовках
+ *     {@code X-File-Name}, {@code X-Category}, {@code X-Tags} (значения в URL-кодировке);</li>
+ *     <li>multipart/form-data, где поля {@code category}, {@code tags} и {@code fileName} идут
+ *     ПЕРЕД частью {@code file} - поток читается последовательно, вернуться к ним уже нельзя.</li>
+ * </ul>
+ * Важно: до вызова этого класса никто не должен обращаться к параметрам запроса
+ * (request.getParameter), иначе контейнер разберет multipart целиком.
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamingUploadReader {
+
+    public static final String FILE_NAME_HEADER = "X-File-Name";
+    public static final String CATEGORY_HEADER = "X-Category";
+    public static final String TAGS_HEADER = "X-Tags";
+
+    // Ограничение на размер обычного поля формы, чтобы не читать в память произвольные данные
+    private static final int MAX_FORM_FIELD_BYTES = 8 * 1024;
+    // Заголовки одной части; по умолчанию 512 байт, чего мало для длинного имени файла в UTF-8
+    private static final int MAX_PART_HEADER_BYTES = 8 * 1024;
+
+    private final DocumentService documentService;
+
+    public DocumentDto upload(HttpServletRequest request, User owner) throws IOException {
+        // Та же проверка, что в FileUploadBase.isMultipartContent; сам метод не вызывается: для выбора
+        // его перегрузки компилятору нужен javax.servlet
+        if (StringUtils.startsWithIgnoreCase(request.getContentType(), FileUploadBase.MULTIPART)) {
+            return uploadMultipart(request, owner);
+        }
+        return uploadRawBody(request, owner);
+    }
+
+    /**
+     * Пакетная загрузка: тело запроса - ZIP-архив, общие для всех файлов категория и теги
+     * передаются в заголовках {@code X-Category} и {@code X-Tags}.
+     */
+    public BulkUploadResponse uploadArchive(HttpServletRequest request, User owner) throws IOException {
+        String category = decodeHeader(request.getHeader(CATEGORY_HEADER));
+        Set<String> tags = parseTags(decodeHeader(request.getHeader(TAGS_HEADER)));
+
+        try (InputStream body = request.getInputStream()) {
+            return documentService.uploadDocumentArchive(body, category, tags, owner);
+        }
+    }
+
+    private DocumentDto uploadRawBody(HttpServletRequest request, User owner) throws IOException {
+        String fileName = decodeHeader(request.getHeader(FILE_NAME_HEADER));
+        if (!StringUtils.hasText(fileName)) {
+            throw new InvalidRequestException("Header " + FILE_NAME_HEADER + " is required for streaming upload");
+        }
+        String category = decodeHeader(request.getHeader(CATEGORY_HEADER));
+        Set<String> tags = parseTags(decodeHeader(request.getHeader(TAGS_HEADER)));
+
+        try (InputStream body = request.getInputStream()) {
+            return documentService.uploadDocumentStream(body, fileName, request.getContentType(),
+                    request.getContentLengthLong(), category, tags, owner);
+        }
+    }
+
+    private DocumentDto uploadMultipart(HttpServletRequest request, User owner) throws IOException {
+        // Заголовки задают значения по умолчанию, поля формы перед файлом их переопределяют
+        String fileName = decodeHeader(request.getHeader(FILE_NAME_HEADER));
+        String category = decodeHeader(request.getHeader(CATEGORY_HEADER));
+        Set<String> tags = parseTags(decodeHeader(request.getHeader(TAGS_HEADER)));
+
+        try {
+            return uploadMultipart(request, fileName, category, tags, owner);
+        } catch (FileUploadException e) {
+            throw new InvalidRequestException("Could not read the multipart request: " + e.getMessage(), e);
+        }
+    }
+
+    private DocumentDto uploadMultipart(HttpServletRequest request, String fileName, String category, Set<String> tags,
+                                        User owner) throws IOException, FileUploadException {
+        // Потоковый API FileUpload не использует классы сервлетов: запрос передается через UploadContext
+        FileUpload upload = new FileUpload();
+        upload.setPartHeaderSizeMax(MAX_PART_HEADER_BYTES);
+        FileItemIterator iterator = upload.getItemIterator(new JakartaRequestContext(request));
+        while (iterator.hasNext()) {
+            FileItemStream item = iterator.next();
+            if (item.isFormField()) {
+                String value = readFormField(item);
+                switch (item.getFieldName()) {
+                    case "category" -> category = StringUtils.hasText(value) ? value : category;
+                    case "tags" -> tags.addAll(parseTags(value));
+                    case "fileName" -> fileName = StringUtils.hasText(value) ? value : fileName;
+                    default -> {
+                        // Неизвестные поля просто пропускаем
+                    }
+                }
+                continue;
+            }
+
+            if ("file".equals(item.getFieldName())) {
+                String resolvedName = StringUtils.hasText(fileName) ? fileName : item.getName();
+                if (!StringUtils.hasText(resolvedName)) {
+                    throw new InvalidRequestException("File is not selected");
+                }
+                try (InputStream fileStream = item.openStream()) {
+                    return documentService.uploadDocumentStream(fileStream, resolvedName, item.getContentType(),
+                            -1, category, tags, owner);
+                }
+            }
+        }
+        throw new InvalidRequestException("Multipart request does not contain a 'file' part");
+    }
+
+    private String readFormField(FileItemStream item) throws IOException {
+        try (InputStream in = item.openStream()) {
+            byte[] bytes = in.readNBytes(MAX_FORM_FIELD_BYTES + 1);
+            if (bytes.length > MAX_FORM_FIELD_BYTES) {
+                throw new InvalidRequestException("Form field '" + item.getFieldName() + "' is too large");
+            }
+            return new String(bytes, StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private String decodeHeader(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        // Заголовки HTTP не могут содержать произвольный Unicode, поэтому имена передаются в URL-кодировке
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8).trim();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Header value is not URL-encoded: " + value, e);
+        }
+    }
+
+    private Set<String> parseTags(String value) {
+        if (!StringUtils.hasText(value)) {
+            return new HashSet<>();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    /**
+     * Запрос Jakarta Servlet в виде, который принимает FileUpload (его собственные адаптеры рассчитаны на javax.servlet).
+     */
+    private record JakartaRequestContext(HttpServletRequest request) implements UploadContext {
+
+        @Override
+        public String getCharacterEncoding() {
+            return request.getCharacterEncoding();
+        }
+
+        @Override
+        public String getContentType() {
+            return request.getContentType();
+        }
+
+        @Override
+        @Deprecated
+        public int getContentLength() {
+            return request.getContentLength();
+        }
+
+        @Override
+        public long contentLength() {
+            return request.getContentLengthLong();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return request.getInputStream();
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.example.documentservice.controller;
 
 import com.example.documentservice.dto.DocumentDto;
 import com.example.documentservice.dto.DocumentShareDto;
+import com.example.documentservice.dto.TagMatchMode;
+import com.example.documentservice.dto.DownloadMode;
 import com.example.documentservice.dto.FileDownloadDto;
 import com.example.documentservice.dto.SignUpRequest;
 import com.example.documentservice.entity.User;
 import com.example.documentservice.service.AuthenticationService;
 import com.example.documentservice.service.DocumentService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +17,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -23,6 +27,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
@@ -38,6 +43,8 @@ public class WebController {
 
     private final DocumentService documentService;
     private final AuthenticationService authenticationService;
+    private final StreamingUploadReader streamingUploadReader;
+    private final FileDownloadResponseFactory downloadResponseFactory;
 
 
     @GetMapping()
@@ -84,13 +91,14 @@ public class WebController {
         Pageable pageable = PageRequest.of(page, size);
 
         // Получаем страницу документов
-        Page<DocumentDto> documentPage = documentService.getAllUserDocuments(user, category, null, query, pageable);
+        Page<DocumentDto> documentPage = documentService.getAllUserDocuments(user, category, null, TagMatchMode.ANY, query, pageable);
 
         // Кладем в модель сам объект Page, он содержит всю нужную информацию
         model.addAttribute("documentPage", documentPage);
         model.addAttribute("username", user.getUsername());
         model.addAttribute("category", category);
         model.addAttribute("query", query);
+        model.addAttribute("facets", documentService.getUserDocumentFacets(user, category, null, TagMatchMode.ANY, query));
 
         return "documents"; // Возвращает templates/documents.html
     }
@@ -114,15 +122,29 @@ public class WebController {
         return "redirect:/web/documents";
     }
 
+    // Потоковая загрузка из формы: поля category/tags в форме расположены перед файлом
+    @PostMapping("/web/documents/upload-stream")
+    public String handleStreamingFileUpload(HttpServletRequest request,
+                                            @AuthenticationPrincipal User user,
+                                            RedirectAttributes redirectAttributes) {
+        try {
+            DocumentDto documentDto = streamingUploadReader.upload(request, user);
+            redirectAttributes.addFlashAttribute("successMessage", "Файл '" + documentDto.getFileName() + "' успешно загружен!");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Не удалось загрузить файл: " + e.getMessage());
+        }
+        return "redirect:/web/documents";
+    }
+
     @GetMapping("/web/documents/{id}/download")
-    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id, @AuthenticationPrincipal User user) {
+    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id,
+                                                     @RequestParam(required = false) DownloadMode mode,
+                                                     @RequestHeader HttpHeaders headers,
+                                                     @AuthenticationPrincipal User user) {
 
-        FileDownloadDto fileDto = documentService.downloadDocument(id, user);
+        FileDownloadDto fileDto = documentService.downloadDocument(id, user, mode);
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"" + fileDto.fileName() + "\"")
-                .contentType(fileDto.mediaType())
-                .body(fileDto.resource());
+        return downloadResponseFactory.create(fileDto, headers);
     }
 
     @PostMapping("/web/documents/{id}/delete")
@@ -148,17 +170,20 @@ public class WebController {
                                     @RequestParam(defaultValue = "10") int size,
                                     @RequestParam(required = false) String category,
                                     @RequestParam(required = false) Set<String> tags,
+                                    @RequestParam(defaultValue = "ANY") TagMatchMode tagMatch,
                                     @RequestParam(required = false) String query,
                                     @RequestParam(required = false) String username) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<DocumentDto> documentPage = documentService.getAllDocumentsForAdmin(pageable, category, tags, query, username);
+        Page<DocumentDto> documentPage = documentService.getAllDocumentsForAdmin(pageable, category, tags, tagMatch, query, username);
 
         model.addAttribute("documentPage", documentPage);
         model.addAttribute("category", category);
         model.addAttribute("tags", tags != null ? String.join(",", tags) : "");
+        model.addAttribute("tagMatch", tagMatch);
         model.addAttribute("query", query);
         model.addAttribute("username", username);
+        model.addAttribute("facets", documentService.getDocumentFacetsForAdmin(category, tags, tagMatch, query, username));
 
         return "admin-dashboard";
     }
@@ -0,0 +1,19 @@
+package com.example.documentservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUploadResponse {
+    private int uploaded;
+    private int failed;
+    // Результат по каждому файлу в порядке следования в архиве
+    private List<BulkUploadResultDto> files;
+}
@@ -0,0 +1,20 @@
+package com.example.documentservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUploadResultDto {
+    // Путь файла внутри архива
+    private String path;
+    private boolean success;
+    // Созданный документ, если файл загружен
+    private DocumentDto document;
+    // Причина, по которой файл не загружен
+    private String error;
+}
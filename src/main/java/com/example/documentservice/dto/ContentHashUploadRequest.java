@@ -0,0 +1,33 @@
+package com.example.documentservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentHashUploadRequest {
+    @NotBlank(message = "Хеш файла не может быть пустым")
+    @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "Хеш должен быть SHA-256 в шестнадцатеричном виде")
+    private String sha256;
+
+    @NotNull(message = "Размер файла обязателен")
+    @PositiveOrZero(message = "Размер файла не может быть отрицательным")
+    private Long size;
+
+    @NotBlank(message = "Имя файла не может быть пустым")
+    private String fileName;
+
+    private String contentType;
+    private String category;
+    private Set<String> tags;
+}
@@ -0,0 +1,14 @@
+package com.example.documentservice.dto;
+
+import java.util.List;
+
+/**
+ * Страница списка при чтении по курсору.
+ * @param content Строки страницы
+ * @param nextCursor Токен для запроса следующей страницы; null, если это последняя страница
+ */
+public record CursorPage<T>(
+        List<T> content,
+        String nextCursor
+) {
+}
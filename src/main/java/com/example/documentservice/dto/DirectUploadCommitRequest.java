@@ -0,0 +1,15 @@
+package com.example.documentservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadCommitRequest {
+    // ETag, полученный клиентом от хранилища (необязательно). Если указан, должен совпасть с ETag объекта
+    private String etag;
+}
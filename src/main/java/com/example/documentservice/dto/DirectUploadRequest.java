@@ -0,0 +1,30 @@
+package com.example.documentservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadRequest {
+    @NotBlank(message = "Имя файла не может быть пустым")
+    private String fileName;
+
+    private String contentType;
+
+    // Размер нужен заранее: по нему выбирается способ загрузки и проверяется результат
+    @NotNull(message = "Размер файла обязателен")
+    @PositiveOrZero(message = "Размер файла не может быть отрицательным")
+    private Long size;
+
+    private String category;
+    private Set<String> tags;
+}
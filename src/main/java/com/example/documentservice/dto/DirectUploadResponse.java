@@ -0,0 +1,24 @@
+package com.example.documentservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadResponse {
+    // ID документа в статусе PENDING, по нему вызывается commit
+    private Long documentId;
+    // null - весь файл загружается одним PUT по единственной ссылке
+    private String uploadId;
+    private long partSize;
+    // Для multipart: ссылка i соответствует части с номером i + 1
+    private List<String> uploadUrls;
+    private Instant expiresAt;
+}
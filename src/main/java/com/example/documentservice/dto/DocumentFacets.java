@@ -0,0 +1,18 @@
+package com.example.documentservice.dto;
+
+import java.util.List;
+
+/**
+ * Счетчики по категориям и тегам для текущего фильтра списка документов.
+ * <p>
+ * Каждый счетчик считается без собственного фильтра: категории - с учетом тегов и поиска, но без
+ * выбранной категории; теги - без выбранных тегов. Так видно, сколько документов будет после
+ * переключения значения.
+ * @param categories Категории, от самых частых
+ * @param tags Теги, от самых частых
+ */
+public record DocumentFacets(
+        List<FacetCount> categories,
+        List<FacetCount> tags
+) {
+}
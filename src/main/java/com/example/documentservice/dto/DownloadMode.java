@@ -0,0 +1,13 @@
+package com.example.documentservice.dto;
+
+/**
+ * Способ отдачи файла клиенту.
+ */
+public enum DownloadMode {
+    /** Файл проходит через приложение (поддерживаются Range и условные запросы). */
+    PROXY,
+    /** Ответ 302 на короткоживущую подписанную ссылку MinIO, байты идут мимо JVM. */
+    REDIRECT,
+    /** Выбор по размеру файла: крупные файлы - REDIRECT, остальные - PROXY. */
+    AUTO
+}
@@ -0,0 +1,12 @@
+package com.example.documentservice.dto;
+
+/**
+ * Значение фильтра и число документов с ним.
+ * @param value Категория или тег
+ * @param count Число документов
+ */
+public record FacetCount(
+        String value,
+        long count
+) {
+}
@@ -3,17 +3,28 @@ package com.example.documentservice.dto;
 import org.springframework.http.MediaType;
 import org.springframework.core.io.Resource;
 
+import java.net.URI;
+import java.time.Instant;
+
 /**
  * DTO, содержащий все необходимое для скачивания файла.
  * Используем record для создания простого и неизменяемого объекта.
  *
  * @param fileName Имя файла.
- * @param resource Содержимое файла.
+ * @param resource Содержимое файла. Открывается при формировании ответа, а не при создании DTO.
  * @param mediaType MIME-тип файла.
+ * @param contentLength Размер файла в байтах.
+ * @param lastModified Время последнего изменения (загрузки) файла.
+ * @param etag Валидатор содержимого (без кавычек) или null.
+ * @param redirectUrl Подписанная ссылка на хранилище, если файл отдается редиректом (иначе null).
  */
 public record FileDownloadDto(
         String fileName,
         Resource resource,
-        MediaType mediaType
+        MediaType mediaType,
+        long contentLength,
+        Instant lastModified,
+        String etag,
+        URI redirectUrl
 ) {
 }
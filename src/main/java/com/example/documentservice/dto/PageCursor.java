@@ -0,0 +1,47 @@
+package com.example.documentservice.dto;
+
+import com.example.documentservice.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция в списке при постраничном чтении по ключу (keyset): дата и id последней отданной строки.
+ * Следующая страница начинается строго после этой пары, поэтому не зависит от глубины (нет OFFSET).
+ * @param timestamp Дата загрузки документа (или дата отправки для списка отправленных)
+ * @param id ID последней строки, различает строки с одинаковой датой
+ */
+public record PageCursor(LocalDateTime timestamp, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Кодирует позицию в непрозрачный токен для клиента.
+     */
+    public String encode() {
+        String value = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает токен, выданный {@link #encode()}.
+     * @param token Токен или null для первой страницы
+     * @return Позиция или null, если токен не передан
+     * @throws InvalidCursorException если токен поврежден
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            return new PageCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor", e);
+        }
+    }
+}
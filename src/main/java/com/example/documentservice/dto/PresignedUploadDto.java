@@ -0,0 +1,20 @@
+package com.example.documentservice.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Подписанные ссылки для загрузки файла клиентом напрямую в хранилище.
+ *
+ * @param uploadId ID multipart-загрузки или null, если файл загружается одним PUT-запросом.
+ * @param partSize Размер каждой части (кроме последней) для multipart-загрузки; для одного PUT - размер файла.
+ * @param uploadUrls Ссылки для PUT-запросов: одна для всего файла или по одной на каждую часть (по порядку номеров).
+ * @param expiresAt Время, после которого ссылки перестают действовать.
+ */
+public record PresignedUploadDto(
+        String uploadId,
+        long partSize,
+        List<String> uploadUrls,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.documentservice.dto;
+
+/**
+ * Способ поиска документов по параметру query.
+ */
+public enum SearchMode {
+    /** Полнотекстовый поиск по имени файла, категории и тегам (GIN-индекс, сортировка по релевантности). */
+    FULL_TEXT,
+    /** Поиск подстроки в имени файла (LIKE), без индекса. */
+    LIKE
+}
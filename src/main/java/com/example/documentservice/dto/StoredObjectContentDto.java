@@ -0,0 +1,15 @@
+package com.example.documentservice.dto;
+
+import java.io.InputStream;
+
+/**
+ * Содержимое объекта вместе с метаданными из ответа хранилища на тот же запрос.
+ *
+ * @param metadata Метаданные объекта; размер -1, если хранилище его не сообщило.
+ * @param content Поток с содержимым объекта.
+ */
+public record StoredObjectContentDto(
+        StoredObjectDto metadata,
+        InputStream content
+) {
+}
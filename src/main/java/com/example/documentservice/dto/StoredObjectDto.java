@@ -0,0 +1,15 @@
+package com.example.documentservice.dto;
+
+/**
+ * Метаданные объекта в хранилище.
+ *
+ * @param size Размер объекта в байтах.
+ * @param etag ETag объекта (без кавычек).
+ * @param contentType MIME-тип, сохраненный вместе с объектом.
+ */
+public record StoredObjectDto(
+        long size,
+        String etag,
+        String contentType
+) {
+}
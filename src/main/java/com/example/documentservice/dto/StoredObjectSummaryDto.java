@@ -0,0 +1,17 @@
+package com.example.documentservice.dto;
+
+import java.time.Instant;
+
+/**
+ * Объект из листинга хранилища.
+ *
+ * @param name Уникальное имя объекта в хранилище.
+ * @param size Размер объекта в байтах.
+ * @param lastModified Время последнего изменения объекта.
+ */
+public record StoredObjectSummaryDto(
+        String name,
+        long size,
+        Instant lastModified
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.documentservice.dto;
+
+/**
+ * Как фильтр по тегам сопоставляет несколько тегов.
+ */
+public enum TagMatchMode {
+    /** У документа есть хотя бы один из тегов. */
+    ANY,
+    /** У документа есть все теги. */
+    ALL
+}
@@ -0,0 +1,15 @@
+package com.example.documentservice.dto;
+
+/**
+ * Объект, только что загруженный в хранилище, но еще не учтенный в storage_blobs.
+ *
+ * @param storageKey Ключ, под которым объект загружен.
+ * @param sha256 SHA-256 содержимого в hex.
+ * @param size Фактический размер в байтах.
+ */
+public record UploadedContentDto(
+        String storageKey,
+        String sha256,
+        long size
+) {
+}
@@ -1,10 +1,10 @@
 package com.example.documentservice.entity;
 
 import jakarta.persistence.CascadeType;
-import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
-import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -12,15 +12,17 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -37,7 +39,9 @@ import java.util.Set;
 public class Document {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ключи выдаются блоками (см. V15), поэтому новые документы вставляются пачками
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "documents_id_seq")
+    @SequenceGenerator(name = "documents_id_seq", sequenceName = "documents_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -54,15 +58,40 @@ public class Document {
 
     private String category;
 
+    // Заполняется при создании объекта, а не при вставке: с ключами из последовательности INSERT откладывается
+    // до flush, а DTO нового документа строится раньше
     @Column(nullable = false, updatable = false)
-    @CreationTimestamp
-    private LocalDateTime uploadDate;
+    @Builder.Default
+    private LocalDateTime uploadDate = LocalDateTime.now();
 
-    @ElementCollection(fetch = FetchType.EAGER)  // EAGER - загружать теги вместе с документом
-    @CollectionTable(name = "document_tags", joinColumns = @JoinColumn(name = "document_id")) // Таблица для хранения тегов
-    @Column(name = "tag")
+    // Теги хранятся массивом text[] в строке документа: читаются вместе с ней, фильтр идет по GIN-индексу
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(nullable = false, columnDefinition = "text[]")
+    @Builder.Default
     private Set<String> tags = new HashSet<>();
 
+    // PENDING - файл загружается клиентом напрямую в хранилище и еще не подтвержден
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private DocumentStatus status = DocumentStatus.ACTIVE;
+
+    // ID multipart-загрузки в хранилище для незавершенной прямой загрузки
+    private String uploadId;
+
+    // Содержимое в хранилище; несколько документов с одинаковым файлом ссылаются на один объект.
+    // null только у незавершенной прямой загрузки
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id")
+    private StorageBlob blob;
+
+    // Валидатор содержимого для HTTP-кэширования (ETag): SHA-256 файла или ETag объекта в MinIO
+    private String etag;
+
+    // Когда проиндексировано содержимое файла (null - еще нет); пишет задача INDEX_CONTENT
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime contentIndexedAt;
+
     // Связь "Многие к одному": много документов могут принадлежать одному пользователю
     @ManyToOne(fetch = FetchType.LAZY) // LAZY - загружать пользователя только при прямом обращении
     @JoinColumn(name = "user_id", nullable = false) // Внешний ключ на таблицу users
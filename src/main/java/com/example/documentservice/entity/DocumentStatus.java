@@ -0,0 +1,11 @@
+package com.example.documentservice.entity;
+
+/**
+ * Состояние документа.
+ */
+public enum DocumentStatus {
+    /** Место под документ выдано, но клиент еще не подтвердил загрузку файла в хранилище. */
+    PENDING,
+    /** Файл загружен и проверен, документ доступен. */
+    ACTIVE
+}
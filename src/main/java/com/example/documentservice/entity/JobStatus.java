@@ -0,0 +1,11 @@
+package com.example.documentservice.entity;
+
+/**
+ * Состояние фоновой задачи. Выполненные задачи удаляются из очереди.
+ */
+public enum JobStatus {
+    /** Ждет выполнения или выполняется. */
+    PENDING,
+    /** Все попытки завершились ошибкой; задача остается в таблице для разбора. */
+    FAILED
+}
@@ -0,0 +1,11 @@
+package com.example.documentservice.entity;
+
+/**
+ * Тип фоновой задачи. От типа зависит, на что указывает {@link BackgroundJob#getTargetId()}.
+ */
+public enum JobType {
+    /** Посчитать SHA-256 объекта без хеша (прямая загрузка) и объединить его с такой же копией; targetId - ID объекта. */
+    HASH_BLOB,
+    /** Извлечь текст файла для поиска по содержимому; targetId - ID документа. */
+    INDEX_CONTENT
+}
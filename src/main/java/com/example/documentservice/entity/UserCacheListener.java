@@ -0,0 +1,41 @@
+package com.example.documentservice.entity;
+
+import com.example.documentservice.service.UserService;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Сбрасывает кэш пользователей при изменении или удалении пользователя.
+ * <p>
+ * Hibernate создает слушатель через Spring, поэтому зависимости внедряются как в обычный бин.
+ * UserService берется через ObjectProvider: слушатель создается вместе с EntityManagerFactory,
+ * раньше сервисов.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheListener {
+
+    private final ObjectProvider<UserService> userService;
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String username = user.getUsername();
+        userService.getObject().evictUser(username);
+        // Между flush и commit другой запрос может снова положить в кэш старую версию из БД,
+        // поэтому повторяем очистку после завершения транзакции
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    userService.getObject().evictUser(username);
+                }
+            });
+        }
+    }
+}
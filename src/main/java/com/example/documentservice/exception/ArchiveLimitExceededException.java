@@ -0,0 +1,11 @@
+package com.example.documentservice.exception;
+
+/**
+ * Архив пакетной загрузки превышает ограничения (число файлов, размер, степень сжатия). Отдается как 413.
+ */
+public class ArchiveLimitExceededException extends InvalidRequestException {
+
+    public ArchiveLimitExceededException(String message) {
+        super(message);
+    }
+}
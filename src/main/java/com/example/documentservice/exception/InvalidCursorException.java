@@ -0,0 +1,11 @@
+package com.example.documentservice.exception;
+
+/**
+ * Курсор страницы поврежден или выдан не этим сервисом.
+ */
+public class InvalidCursorException extends InvalidRequestException {
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.documentservice.exception;
+
+/**
+ * Некорректные данные запроса, которые клиент может исправить сам. Отдается как 400.
+ * <p>
+ * Прочие {@link IllegalArgumentException} означают ошибку в коде или настройках и остаются ошибкой сервера.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
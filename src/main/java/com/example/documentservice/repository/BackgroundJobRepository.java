@@ -0,0 +1,49 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.entity.BackgroundJob;
+import com.example.documentservice.entity.JobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, Long> {
+
+    /**
+     * Берет в работу до {@code limit} задач, срок которых наступил, одним запросом.
+     * Строки, которые в этот момент берет другой узел, пропускаются (SKIP LOCKED) - узлы не ждут друг друга
+     * и не получают одну задачу дважды. Взятые задачи остаются в очереди, но становятся невидимыми
+     * на время аренды {@code leaseSeconds}.
+     * @return Взятые задачи с уже увеличенным счетчиком попыток
+     */
+    @Query(value = "UPDATE background_jobs SET attempts = attempts + 1, " +
+                   "run_at = now() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE id IN (SELECT id FROM background_jobs " +
+                   "             WHERE status = 'PENDING' AND run_at <= now() " +
+                   "             ORDER BY run_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING *", nativeQuery = true)
+    @Transactional
+    List<BackgroundJob> claimDueJobs(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BackgroundJob j WHERE j.id = :id")
+    int deleteJob(@Param("id") Long id);
+
+    /**
+     * Откладывает задачу до следующей попытки или, если попытки исчерпаны, помечает ее FAILED.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE BackgroundJob j SET j.status = :status, j.runAt = :runAt, j.lastError = :error WHERE j.id = :id")
+    int reschedule(@Param("id") Long id, @Param("status") JobStatus status, @Param("runAt") LocalDateTime runAt,
+                   @Param("error") String error);
+
+    long countByStatus(JobStatus status);
+}
@@ -0,0 +1,51 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.dto.FacetCount;
+import com.example.documentservice.dto.PageCursor;
+import com.example.documentservice.entity.Document;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Чтение списков документов сразу в DocumentDto, без загрузки сущностей.
+ */
+public interface DocumentListingRepository {
+
+    /**
+     * Страница документов, подходящих под спецификацию, за фиксированное число запросов:
+     * строки страницы вместе с тегами и, если нужно, count.
+     * @param spec Фильтр (любая комбинация DocumentSpecification)
+     * @param pageable Страница и сортировка по полям документа; без сортировки - порядок из спецификации
+     *                 (например, по релевантности), затем сначала новые
+     * @return Страница DTO
+     */
+    Page<DocumentDto> findDocumentDtos(Specification<Document> spec, Pageable pageable);
+
+    /**
+     * Документы, подходящие под спецификацию, от новых к старым, начиная строго после курсора.
+     * Порядок - (uploadDate DESC, id DESC); ни OFFSET, ни count не выполняются.
+     * @param spec Фильтр (любая комбинация DocumentSpecification)
+     * @param after Последняя строка предыдущей страницы или null для первой страницы
+     * @param limit Максимальное число строк
+     * @return Строки страницы
+     */
+    List<DocumentDto> findDocumentDtos(Specification<Document> spec, PageCursor after, int limit);
+
+    /**
+     * Число документов по категориям, от самых частых.
+     * @param spec Фильтр (любая комбинация DocumentSpecification)
+     * @param limit Максимальное число категорий
+     */
+    List<FacetCount> countByCategory(Specification<Document> spec, int limit);
+
+    /**
+     * Число документов по тегам, от самых частых.
+     * @param spec Фильтр (любая комбинация DocumentSpecification)
+     * @param limit Максимальное число тегов
+     */
+    List<FacetCount> countByTag(Specification<Document> spec, int limit);
+}
@@ -0,0 +1,215 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.dto.FacetCount;
+import com.example.documentservice.dto.PageCursor;
+import com.example.documentservice.entity.Document;
+import com.example.documentservice.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaDerivedRoot;
+import org.hibernate.query.criteria.JpaSubQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+/**
+ * Реализация {@link DocumentListingRepository}.
+ * <p>
+ * Загрузка сущностей для списка стоила 1 + N запросов: владелец - LAZY-прокси, который догружается
+ * отдельным select на каждую строку. Здесь строки читаются проекцией вместе с именем владельца
+ * и тегами (массив в строке документа) одним запросом.
+ */
+@RequiredArgsConstructor
+public class DocumentListingRepositoryImpl implements DocumentListingRepository {
+
+    // Сортировка по умолчанию: сначала новые, id - для стабильного порядка при одинаковой дате
+    private static final Sort DEFAULT_SORT = Sort.by(Sort.Order.desc("uploadDate"), Sort.Order.desc("id"));
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Page<DocumentDto> findDocumentDtos(Specification<Document> spec, Pageable pageable) {
+        List<DocumentDto> content = pageable.isPaged()
+                ? findRows(spec, null, pageable.getSort(), (int) pageable.getOffset(), pageable.getPageSize())
+                : findRows(spec, null, pageable.getSort(), 0, -1);
+
+        // count выполняется, только если по первой странице нельзя понять общее число строк
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<DocumentDto> findDocumentDtos(Specification<Document> spec, PageCursor after, int limit) {
+        // Порядок строго (uploadDate DESC, id DESC): сортировка из спецификации (например, по релевантности)
+        // не применяется, иначе курсор потеряет смысл
+        return findRows(spec, after, DEFAULT_SORT, 0, limit);
+    }
+
+    /**
+     * Строки страницы с тегами.
+     * @param after Курсор для чтения по ключу или null
+     * @param sort Сортировка; если не задана, применяется сортировка из спецификации, затем по умолчанию
+     * @param maxResults Число строк или -1 без ограничения
+     */
+    private List<DocumentDto> findRows(Specification<Document> spec, PageCursor after, Sort sort,
+                                       int firstResult, int maxResults) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Document> root = query.from(Document.class);
+        Join<Document, User> owner = root.join("owner");
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("fileName").alias("fileName"),
+                root.get("fileType").alias("fileType"),
+                root.get("size").alias("size"),
+                root.get("category").alias("category"),
+                root.get("uploadDate").alias("uploadDate"),
+                root.get("tags").alias("tags"),
+                owner.get("username").alias("ownerUsername"));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (after != null) {
+            predicate = predicate == null ? after(after, root, cb) : cb.and(predicate, after(after, root, cb));
+        }
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Order> orders = new ArrayList<>();
+        if (sort.isSorted()) {
+            orders.addAll(toOrders(sort, root, cb));
+        } else {
+            orders.addAll(query.getOrderList());
+            orders.addAll(toOrders(DEFAULT_SORT, root, cb));
+        }
+        query.orderBy(orders);
+
+        var typedQuery = entityManager.createQuery(query).setFirstResult(firstResult);
+        if (maxResults >= 0) {
+            typedQuery.setMaxResults(maxResults);
+        }
+        List<Tuple> rows = typedQuery.getResultList();
+
+        return rows.stream()
+                .map(row -> DocumentDto.builder()
+                        .id(row.get("id", Long.class))
+                        .fileName(row.get("fileName", String.class))
+                        .fileType(row.get("fileType", String.class))
+                        .size(row.get("size", Long.class))
+                        .category(row.get("category", String.class))
+                        .uploadDate(row.get("uploadDate", LocalDateTime.class))
+                        .tags(toSet(row.get("tags")))
+                        .ownerUsername(row.get("ownerUsername", String.class))
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Строки после курсора в порядке (uploadDate DESC, id DESC): (uploadDate, id) < (cursor.timestamp, cursor.id).
+     * Условие uploadDate <= cursor.timestamp избыточно, но именно по нему PostgreSQL начинает
+     * просмотр индекса с нужного места, а не с начала.
+     */
+    private static Predicate after(PageCursor cursor, Root<Document> root, CriteriaBuilder cb) {
+        Path<LocalDateTime> uploadDate = root.get("uploadDate");
+        Path<Long> id = root.get("id");
+        return cb.and(
+                cb.lessThanOrEqualTo(uploadDate, cursor.timestamp()),
+                cb.or(cb.lessThan(uploadDate, cursor.timestamp()),
+                        cb.and(cb.equal(uploadDate, cursor.timestamp()), cb.lessThan(id, cursor.id()))));
+    }
+
+    @Override
+    public List<FacetCount> countByCategory(Specification<Document> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Document> root = query.from(Document.class);
+        Path<String> category = root.get("category");
+        Expression<Long> count = cb.count(root);
+        query.multiselect(category, count);
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        Predicate hasCategory = cb.isNotNull(category);
+        query.where(predicate == null ? hasCategory : cb.and(predicate, hasCategory));
+        query.groupBy(category);
+        // Сортировка из спецификации (по релевантности) для группировки не нужна
+        query.orderBy(cb.desc(count), cb.asc(category));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(row -> new FacetCount(row.get(0, String.class), row.get(1, Long.class)))
+                .toList();
+    }
+
+    /**
+     * Теги хранятся массивом в строке документа: массивы подходящих документов разворачиваются unnest
+     * в подзапросе, а группировка, сортировка и LIMIT выполняются в БД - в приложение приходят только
+     * {@code limit} строк.
+     */
+    @Override
+    public List<FacetCount> countByTag(Specification<Document> spec, int limit) {
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        JpaCriteriaQuery<Tuple> query = cb.createTupleQuery();
+
+        JpaSubQuery<Tuple> tagRows = query.subquery(Tuple.class);
+        Root<Document> root = tagRows.from(Document.class);
+        tagRows.multiselect(cb.function("unnest", String.class, root.get("tags")).alias("tag"));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            tagRows.where(predicate);
+        }
+
+        JpaDerivedRoot<Tuple> tagRow = query.from(tagRows);
+        Path<String> tag = tagRow.get("tag");
+        Expression<Long> count = cb.count(tag);
+        query.multiselect(tag, count);
+        query.groupBy(tag);
+        // Сортировка из спецификации (по релевантности) для группировки не нужна
+        query.orderBy(cb.desc(count), cb.asc(tag));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(row -> new FacetCount(row.get(0, String.class), row.get(1, Long.class)))
+                .toList();
+    }
+
+    private long count(Specification<Document> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Document> root = query.from(Document.class);
+        query.select(cb.count(root));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(List.of());
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> toSet(Object tags) {
+        return tags == null ? new HashSet<>() : new HashSet<>((Collection<String>) tags);
+    }
+
+    private static Predicate toPredicate(Specification<Document> spec, Root<Document> root,
+                                         CriteriaQuery<?> query, CriteriaBuilder cb) {
+        return spec == null ? null : spec.toPredicate(root, query, cb);
+    }
+}
@@ -1,18 +1,27 @@
 package com.example.documentservice.repository;
 
 import com.example.documentservice.entity.Document;
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.entity.StorageBlob;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSpecificationExecutor<Document> {
+public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSpecificationExecutor<Document>,
+        DocumentListingRepository {
 
     @Query("SELECT ds.document FROM DocumentShare ds WHERE ds.recipient.id = :userId")
     Page<Document> findDocumentsSharedWithUser(@Param("userId") Long userId, Pageable pageable);
@@ -30,4 +39,62 @@ public interface DocumentRepository extends JpaRepository<Document, Long>, JpaSp
      */
     @Query("SELECT d FROM Document d LEFT JOIN FETCH d.shares WHERE d.id = :id")
     Optional<Document> findByIdWithShares(@Param("id") Long id);
+
+    Optional<Document> findByIdAndStatus(Long id, DocumentStatus status);
+
+    /**
+     * Находит документ в заданном статусе и блокирует строку до конца транзакции.
+     * Нужен, чтобы подтверждение загрузки и фоновая очистка не обработали один документ одновременно.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id = :id AND d.status = :status")
+    Optional<Document> findByIdAndStatusForUpdate(@Param("id") Long id, @Param("status") DocumentStatus status);
+
+    @Query("SELECT d.id FROM Document d WHERE d.status = :status AND d.uploadDate < :before ORDER BY d.uploadDate")
+    List<Long> findIdsByStatusAndUploadDateBefore(@Param("status") DocumentStatus status,
+                                                  @Param("before") LocalDateTime before,
+                                                  Pageable pageable);
+
+    /**
+     * Есть ли документ с таким ключом хранилища в заданном статусе.
+     * Сравнение в COLLATE "C": единственный индекс по storage_file_name (V16) построен в этом порядке,
+     * и для сравнения в порядке базы по умолчанию PostgreSQL его не использует и читает всю таблицу.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM documents " +
+                   "WHERE storage_file_name COLLATE \"C\" = :storageFileName AND status = :#{#status.name()})", nativeQuery = true)
+    boolean existsByStorageFileNameAndStatus(@Param("storageFileName") String storageFileName,
+                                             @Param("status") DocumentStatus status);
+
+    /**
+     * Переносит проиндексированное содержимое с другого документа с тем же объектом в хранилище
+     * (копия расшаренного документа, повторная загрузка того же файла), чтобы не извлекать текст повторно.
+     * @return Число обновленных документов; 0 - проиндексированного документа с этим объектом нет
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents d SET content_vector = s.content_vector, content_indexed_at = s.content_indexed_at " +
+                   "FROM (SELECT content_vector, content_indexed_at FROM documents " +
+                   "      WHERE blob_id = :blobId AND content_indexed_at IS NOT NULL LIMIT 1) s " +
+                   "WHERE d.blob_id = :blobId AND d.content_indexed_at IS NULL", nativeQuery = true)
+    int copyContentIndex(@Param("blobId") Long blobId);
+
+    /**
+     * Сохраняет извлеченный текст как поисковый вектор всех еще не проиндексированных документов с этим объектом.
+     * Триггер из V11 добавляет его к search_vector.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET content_vector = setweight(to_tsvector('simple', :text), 'D'), " +
+                   "content_indexed_at = now() " +
+                   "WHERE blob_id = :blobId AND content_indexed_at IS NULL", nativeQuery = true)
+    int updateContentIndex(@Param("blobId") Long blobId, @Param("text") String text);
+
+    /**
+     * Переводит документы с одного объекта в хранилище на другой с тем же содержимым.
+     * @return Число перенесенных документов
+     */
+    @Modifying
+    @Query("UPDATE Document d SET d.blob = :target, d.storageFileName = :storageKey WHERE d.blob = :source")
+    int moveToBlob(@Param("source") StorageBlob source, @Param("target") StorageBlob target,
+                   @Param("storageKey") String storageKey);
 }
@@ -3,6 +3,7 @@ package com.example.documentservice.repository;
 import com.example.documentservice.entity.Document;
 import com.example.documentservice.entity.DocumentShare;
 import com.example.documentservice.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,6 +12,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -39,4 +42,24 @@ public interface DocumentShareRepository extends JpaRepository<DocumentShare, Lo
      * @return Страница с правами доступа.
      */
     Page<DocumentShare> findByDocumentOwner(User owner, Pageable pageable);
+
+    /**
+     * Первая страница прав доступа, выданных владельцем, от новых к старым (чтение по курсору).
+     */
+    @Query("SELECT ds FROM DocumentShare ds JOIN FETCH ds.document d JOIN FETCH d.owner JOIN FETCH ds.recipient " +
+           "WHERE d.owner.id = :ownerId " +
+           "ORDER BY ds.shareAt DESC, ds.id DESC")
+    List<DocumentShare> findSentByOwner(@Param("ownerId") Long ownerId, Limit limit);
+
+    /**
+     * Следующая страница прав доступа после (shareAt, id) последней отданной строки.
+     */
+    @Query("SELECT ds FROM DocumentShare ds JOIN FETCH ds.document d JOIN FETCH d.owner JOIN FETCH ds.recipient " +
+           "WHERE d.owner.id = :ownerId AND ds.shareAt <= :shareAt " +
+           "AND (ds.shareAt < :shareAt OR ds.id < :id) " +
+           "ORDER BY ds.shareAt DESC, ds.id DESC")
+    List<DocumentShare> findSentByOwnerAfter(@Param("ownerId") Long ownerId,
+                                             @Param("shareAt") LocalDateTime shareAt,
+                                             @Param("id") Long id,
+                                             Limit limit);
 }
@@ -0,0 +1,94 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.entity.StorageBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StorageBlobRepository extends JpaRepository<StorageBlob, Long> {
+
+    /**
+     * Регистрирует загруженный объект с известным хешем одним запросом.
+     * Если объект с таким содержимым уже есть, увеличивает его счетчик ссылок и возвращает его -
+     * тогда только что загруженный объект с ключом {@code storageKey} лишний.
+     * Выполняется только в транзакции, которая сохраняет ссылающийся документ.
+     * @return Запись, на которую теперь должен ссылаться документ
+     */
+    @Query(value = "INSERT INTO storage_blobs (sha256, storage_key, size, ref_count, created_at) " +
+                   "VALUES (:sha256, :storageKey, :size, 1, now()) " +
+                   "ON CONFLICT (sha256) DO UPDATE SET ref_count = storage_blobs.ref_count + 1 " +
+                   "RETURNING *", nativeQuery = true)
+    @Transactional(propagation = Propagation.MANDATORY)
+    StorageBlob upsertReference(@Param("sha256") String sha256,
+                                @Param("storageKey") String storageKey,
+                                @Param("size") long size);
+
+    /**
+     * То же, что {@link #upsertReference}, для нескольких объектов одним запросом. Хеши в массиве не должны
+     * повторяться: одинаковое содержимое передается один раз с числом ссылок в {@code refCounts}.
+     * @return Записи, на которые теперь должны ссылаться документы (порядок не гарантирован)
+     */
+    @Query(value = "INSERT INTO storage_blobs (sha256, storage_key, size, ref_count, created_at) " +
+                   "SELECT u.sha256, u.storage_key, u.size, u.ref_count, now() " +
+                   "FROM unnest(CAST(:sha256s AS varchar[]), CAST(:storageKeys AS varchar[]), " +
+                   "CAST(:sizes AS bigint[]), CAST(:refCounts AS int[])) AS u(sha256, storage_key, size, ref_count) " +
+                   "ON CONFLICT (sha256) DO UPDATE SET ref_count = storage_blobs.ref_count + EXCLUDED.ref_count " +
+                   "RETURNING *", nativeQuery = true)
+    @Transactional(propagation = Propagation.MANDATORY)
+    List<StorageBlob> upsertReferences(@Param("sha256s") String[] sha256s,
+                                       @Param("storageKeys") String[] storageKeys,
+                                       @Param("sizes") Long[] sizes,
+                                       @Param("refCounts") Integer[] refCounts);
+
+    /**
+     * Добавляет ссылку на объект с заданным хешем и размером, если на него ссылается документ этого пользователя.
+     */
+    @Query(value = "UPDATE storage_blobs SET ref_count = ref_count + 1 " +
+                   "WHERE sha256 = :sha256 AND size = :size AND ref_count > 0 " +
+                   "AND EXISTS (SELECT 1 FROM documents d WHERE d.blob_id = storage_blobs.id AND d.user_id = :ownerId) " +
+                   "RETURNING *", nativeQuery = true)
+    @Transactional
+    Optional<StorageBlob> acquireOwnedByHash(@Param("sha256") String sha256,
+                                             @Param("size") long size,
+                                             @Param("ownerId") Long ownerId);
+
+    /**
+     * Добавляет ссылку на объект, если он еще не удален.
+     * @return 0, если записи уже нет
+     */
+    @Modifying
+    @Query(value = "UPDATE storage_blobs SET ref_count = ref_count + 1 WHERE id = :id AND ref_count > 0", nativeQuery = true)
+    int incrementRefCount(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "UPDATE storage_blobs SET ref_count = ref_count - 1 WHERE id = :id", nativeQuery = true)
+    int decrementRefCount(@Param("id") Long id);
+
+    /**
+     * Удаляет запись, если на нее больше никто не ссылается.
+     * @return 1, если запись удалена и объект в хранилище можно удалять
+     */
+    @Modifying
+    @Query(value = "DELETE FROM storage_blobs WHERE id = :id AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StorageBlob b WHERE b.id = :id")
+    Optional<StorageBlob> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StorageBlob b WHERE b.sha256 = :sha256")
+    Optional<StorageBlob> findBySha256ForUpdate(@Param("sha256") String sha256);
+
+    boolean existsByStorageKey(String storageKey);
+}
@@ -0,0 +1,39 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.entity.StorageDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StorageDeletionRepository extends JpaRepository<StorageDeletion, Long> {
+
+    /**
+     * Берет пачку удалений, срок которых наступил. Как и очередь задач, пропускает строки,
+     * которые берет другой узел (SKIP LOCKED), и скрывает взятые на время аренды {@code leaseSeconds}.
+     */
+    @Query(value = "UPDATE storage_deletions SET attempts = attempts + 1, " +
+                   "run_at = now() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE id IN (SELECT id FROM storage_deletions WHERE run_at <= now() " +
+                   "             ORDER BY run_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING *", nativeQuery = true)
+    @Transactional
+    List<StorageDeletion> claimDue(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StorageDeletion d WHERE d.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageDeletion d SET d.runAt = :runAt, d.lastError = :error WHERE d.id = :id")
+    int reschedule(@Param("id") Long id, @Param("runAt") LocalDateTime runAt, @Param("error") String error);
+}
@@ -1,17 +1,33 @@
 package com.example.documentservice.repository.specification;
 
+import com.example.documentservice.dto.TagMatchMode;
 import com.example.documentservice.entity.Document;
+import com.example.documentservice.entity.DocumentShare;
+import com.example.documentservice.entity.DocumentStatus;
 import com.example.documentservice.entity.User;
-import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.Locale;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Component
 public class DocumentSpecification {
 
+    // Символ экранирования в шаблонах LIKE; указывается явно, Hibernate не полагается на умолчание СУБД
+    private static final char LIKE_ESCAPE = '\\';
+
+    // Слово для полнотекстового поиска: те же границы, что у индекса (все, кроме букв и цифр, - разделитель)
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
     /**
      * Создает спецификацию для поиска по ID владельца.
      */
@@ -20,6 +36,28 @@ public class DocumentSpecification {
                 criteriaBuilder.equal(root.get("owner").get("id"), ownerId);
     }
 
+    /**
+     * Только подтвержденные документы: незавершенные прямые загрузки в списках не показываются.
+     */
+    public static Specification<Document> isActive() {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get("status"), DocumentStatus.ACTIVE);
+    }
+
+    /**
+     * Документы, к которым пользователю выдан доступ.
+     */
+    public static Specification<Document> sharedWith(Long recipientId) {
+        return (root, query, criteriaBuilder) -> {
+            Subquery<Long> subquery = query.subquery(Long.class);
+            Root<DocumentShare> share = subquery.from(DocumentShare.class);
+            subquery.select(share.get("id")).where(
+                    criteriaBuilder.equal(share.get("document"), root),
+                    criteriaBuilder.equal(share.get("recipient").get("id"), recipientId));
+            return criteriaBuilder.exists(subquery);
+        };
+    }
+
     /**
      * Создает спецификацию для фильтрации по категории.
      */
@@ -33,36 +71,104 @@ public class DocumentSpecification {
 
     /**
      * Создает спецификацию для фильтрации по тегам.
-     * Документ должен содержать ХОТЯ БЫ ОДИН из указанных тегов.
+     * ANY - документ содержит ХОТЯ БЫ ОДИН из указанных тегов, ALL - все указанные теги.
      */
-    public static Specification<Document> byTags(Set<String> tags) {
+    public static Specification<Document> byTags(Set<String> tags, TagMatchMode mode) {
         if (tags == null || tags.isEmpty()) {
             return null; // Если теги не указаны, не добавляем это условие
         }
-        return (root, query, criteriaBuilder) ->
-                root.join("tags").in(tags);
+        String[] values = tags.toArray(String[]::new);
+        String function = mode == TagMatchMode.ALL ? "tags_all" : "tags_any";
+        return (root, query, criteriaBuilder) -> criteriaBuilder.isTrue(criteriaBuilder.function(
+                function, Boolean.class, root.get("tags"), bind(criteriaBuilder, values)));
     }
 
     /**
      * Создает спецификацию для поиска по части имени файла (без учета регистра).
+     * Условие lower(file_name) LIKE '%...%' обслуживает триграммный индекс idx_documents_file_name_trgm.
      */
     public static Specification<Document> byFileName(String fileName) {
         if (!StringUtils.hasText(fileName)) {
             return null; // Если имя файла не указано, не добавляем это условие
         }
         return (root, query, criteriaBuilder) ->
-                criteriaBuilder.like(criteriaBuilder.lower(root.get("fileName")), "%" + fileName.toLowerCase() + "%");
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("fileName")), containsPattern(fileName), LIKE_ESCAPE);
+    }
+
+    /**
+     * Создает спецификацию для полнотекстового поиска по имени файла, категории и тегам.
+     * Каждое слово запроса ищется как префикс ("отч 20" найдет "Отчет_2024.pdf"), все слова должны совпасть.
+     * Результаты сортируются по релевантности, если вызывающий код не задал свою сортировку.
+     * @return Спецификация или null, если в запросе нет ни одного слова (тогда нужен поиск по подстроке)
+     */
+    public static Specification<Document> byFullText(String text) {
+        String tsQuery = toPrefixTsQuery(text);
+        if (tsQuery == null) {
+            return null;
+        }
+        return (root, query, criteriaBuilder) -> {
+            // search_vector не отображается в сущности (см. FullTextSearchFunctionContributor): функции нужен только псевдоним documents
+            Expression<Long> document = root.get("id");
+            // Для count сортировка не нужна
+            if (!Long.class.equals(query.getResultType())) {
+                query.orderBy(criteriaBuilder.desc(criteriaBuilder.function(
+                        "fts_rank", Double.class, document, bind(criteriaBuilder, tsQuery))));
+            }
+            return criteriaBuilder.isTrue(criteriaBuilder.function(
+                    "fts_match", Boolean.class, document, bind(criteriaBuilder, tsQuery)));
+        };
+    }
+
+    /**
+     * Строит tsquery из пользовательского ввода: только буквы и цифры, каждое слово - префикс, слова через AND.
+     * Спецсимволы tsquery (&, |, !, :, скобки) отбрасываются, поэтому синтаксической ошибки быть не может.
+     */
+    static String toPrefixTsQuery(String text) {
+        if (!StringUtils.hasText(text)) {
+            return null;
+        }
+        String tsQuery = WORD.matcher(text.toLowerCase(Locale.ROOT)).results()
+                .map(match -> match.group() + ":*")
+                .collect(Collectors.joining(" & "));
+        return tsQuery.isEmpty() ? null : tsQuery;
     }
 
     // --- НОВЫЙ МЕТОД ДЛЯ АДМИНА ---
+    /**
+     * Документы пользователей, в имени которых есть подстрока (без учета регистра).
+     * Подходящие пользователи находятся подзапросом по триграммному индексу idx_users_username_trgm,
+     * а их документы - по индексу на user_id, без join всей таблицы users.
+     */
     public static Specification<Document> byUsername(String username) {
         if (!StringUtils.hasText(username)) {
             return null;
         }
         return (root, query, criteriaBuilder) -> {
-            Join<Document, User> owner = root.join("owner");
-            return criteriaBuilder.like(criteriaBuilder.lower(owner.get("username")), "%" + username.toLowerCase() + "%");
+            Subquery<Long> owners = query.subquery(Long.class);
+            Root<User> user = owners.from(User.class);
+            owners.select(user.get("id"))
+                    .where(criteriaBuilder.like(criteriaBuilder.lower(user.get("username")), containsPattern(username), LIKE_ESCAPE));
+            return root.get("owner").get("id").in(owners);
         };
     }
+
+    /**
+     * Значение-параметр запроса. CriteriaBuilder.literal в аргументах функций Hibernate подставляет
+     * прямо в текст SQL, и каждый новый поисковый запрос давал бы новый SQL для PostgreSQL.
+     */
+    private static <T> Expression<T> bind(CriteriaBuilder criteriaBuilder, T value) {
+        return ((HibernateCriteriaBuilder) criteriaBuilder).value(value);
+    }
+
+    /**
+     * Шаблон LIKE для поиска подстроки. Символы % и _ из ввода пользователя экранируются символом LIKE_ESCAPE.
+     */
+    static String containsPattern(String value) {
+        String escaped = value.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
 }
 
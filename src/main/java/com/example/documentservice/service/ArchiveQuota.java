@@ -0,0 +1,148 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.exception.ArchiveLimitExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Ограничения пакетной загрузки архива: число файлов, размер одного файла, суммарный размер распакованных
+ * данных и степень сжатия. Архив приходит потоком, а его оглавление записано в конце, поэтому размеры
+ * заранее неизвестны и проверяются по ходу распаковки.
+ * <p>
+ * Первое нарушение запоминается: оно может случиться внутри отправки в хранилище, которая заворачивает
+ * исключение в свое, и тогда его нужно поднять заново через {@link #check()}.
+ */
+class ArchiveQuota {
+
+    // Степень сжатия проверяется, когда распаковано достаточно данных: у небольшого архива она ничего не значит
+    private static final long RATIO_CHECK_THRESHOLD = 1024 * 1024;
+
+    private final CountingInputStream compressed;
+    private final int maxEntries;
+    private final long maxEntrySize;
+    private final long maxTotalSize;
+    private final int maxCompressionRatio;
+
+    private int entries;
+    private long totalSize;
+    private ArchiveLimitExceededException violation;
+
+    ArchiveQuota(InputStream archive, int maxEntries, long maxEntrySize, long maxTotalSize, int maxCompressionRatio) {
+        this.compressed = new CountingInputStream(archive);
+        this.maxEntries = maxEntries;
+        this.maxEntrySize = maxEntrySize;
+        this.maxTotalSize = maxTotalSize;
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    /**
+     * Сжатый поток архива, по которому считается степень сжатия; из него должен читать ZipInputStream.
+     */
+    InputStream archive() {
+        return compressed;
+    }
+
+    /**
+     * Учитывает следующий файл архива.
+     * @param zip Поток архива, стоящий на начале файла
+     * @return Содержимое файла с проверкой ограничений; закрытие не закрывает архив
+     */
+    InputStream nextEntry(InputStream zip) {
+        check();
+        if (++entries > maxEntries) {
+            fail("Archive contains more than " + maxEntries + " files");
+        }
+        return new EntryInputStream(zip);
+    }
+
+    /**
+     * Поднимает уже случившееся нарушение.
+     */
+    void check() {
+        if (violation != null) {
+            throw violation;
+        }
+    }
+
+    int getEntries() {
+        return entries;
+    }
+
+    private void count(long entrySize, long bytes) {
+        totalSize += bytes;
+        if (entrySize > maxEntrySize) {
+            fail("Archive entry is larger than " + maxEntrySize + " bytes");
+        }
+        if (totalSize > maxTotalSize) {
+            fail("Archive content is larger than " + maxTotalSize + " bytes");
+        }
+        if (totalSize > RATIO_CHECK_THRESHOLD && totalSize > maxCompressionRatio * Math.max(compressed.getCount(), 1)) {
+            fail("Archive compression ratio exceeds " + maxCompressionRatio);
+        }
+    }
+
+    private void fail(String message) {
+        if (violation == null) {
+            violation = new ArchiveLimitExceededException(message);
+        }
+        throw violation;
+    }
+
+    private class EntryInputStream extends FilterInputStream {
+
+        private long size;
+
+        EntryInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            check();
+            int b = super.read();
+            if (b != -1) {
+                size++;
+                count(size, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            check();
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                size += n;
+                count(size, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропуск тоже распаковывает данные, поэтому идет через read и учитывается в ограничениях
+            byte[] buffer = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // Файлы читаются из одного потока архива; его закрывает тот, кто открыл
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.JobType;
+
+/**
+ * Очередь фоновых задач в БД.
+ */
+public interface BackgroundJobService {
+
+    /**
+     * Ставит задачу в очередь. Выполняется в текущей транзакции: задача появится в очереди только вместе
+     * с остальными изменениями (например, с записью нового документа) и исчезнет при откате.
+     * @param type Тип задачи
+     * @param targetId ID документа или объекта в хранилище (см. {@link JobType})
+     */
+    void enqueue(JobType type, Long targetId);
+}
@@ -0,0 +1,27 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.BackgroundJob;
+import com.example.documentservice.entity.JobType;
+import com.example.documentservice.repository.BackgroundJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class BackgroundJobServiceImpl implements BackgroundJobService {
+
+    private final BackgroundJobRepository backgroundJobRepository;
+
+    @Override
+    public void enqueue(JobType type, Long targetId) {
+        backgroundJobRepository.save(BackgroundJob.builder()
+                .type(type)
+                .targetId(targetId)
+                .runAt(LocalDateTime.now())
+                .build());
+    }
+}
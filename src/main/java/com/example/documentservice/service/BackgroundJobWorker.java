@@ -0,0 +1,177 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.BackgroundJob;
+import com.example.documentservice.entity.JobStatus;
+import com.example.documentservice.entity.JobType;
+import com.example.documentservice.repository.BackgroundJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполняет задачи из очереди фоновой обработки.
+ * <p>
+ * Раз в {@code jobs.poll-interval} берет из БД столько задач, сколько свободно потоков, и выполняет их
+ * на ограниченном пуле. Несколько узлов работают с одной очередью параллельно: задачи берутся с SKIP LOCKED.
+ * Упавшая задача повторяется с экспоненциальной задержкой, после {@code jobs.max-attempts} попыток
+ * помечается FAILED. Задача, которая выполняется дольше аренды {@code jobs.lease}, может быть взята повторно.
+ * <p>
+ * Метрики: jobs.queue.depth (задачи в очереди по статусу), jobs.latency (от постановки до первого запуска),
+ * jobs.duration (время выполнения по типу и результату).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BackgroundJobWorker {
+
+    // Текст ошибки в таблице ограничен, чтобы стек не раздувал строку
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final BackgroundJobRepository backgroundJobRepository;
+    private final List<JobHandler> jobHandlers;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.threads:4}")
+    private int threads;
+
+    @Value("${jobs.batch-size:20}")
+    private int batchSize;
+
+    @Value("${jobs.lease:5m}")
+    private Duration lease;
+
+    @Value("${jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    // Задержка перед второй попыткой; дальше удваивается, но не больше jobs.max-backoff
+    @Value("${jobs.backoff:10s}")
+    private Duration backoff;
+
+    @Value("${jobs.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    private final Map<JobType, JobHandler> handlers = new EnumMap<>(JobType.class);
+    private ExecutorService executor;
+    // Свободные потоки пула: задач берется не больше, чем есть кому выполнять
+    private Semaphore freeWorkers;
+
+    @PostConstruct
+    void init() {
+        jobHandlers.forEach(handler -> handlers.put(handler.type(), handler));
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "job-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.freeWorkers = new Semaphore(threads);
+
+        for (JobStatus status : JobStatus.values()) {
+            Gauge.builder("jobs.queue.depth", backgroundJobRepository, repository -> repository.countByStatus(status))
+                    .description("Background jobs in the queue")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Невыполненные задачи останутся в очереди и будут взяты снова по истечении аренды
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-interval:PT1S}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int capacity = Math.min(freeWorkers.availablePermits(), batchSize);
+        if (capacity == 0) {
+            return;
+        }
+        List<BackgroundJob> jobs = backgroundJobRepository.claimDueJobs(capacity, lease.toSeconds());
+        for (BackgroundJob job : jobs) {
+            freeWorkers.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    private void run(BackgroundJob job) {
+        if (job.getAttempts() == 1) {
+            Timer.builder("jobs.latency")
+                    .description("Time from enqueue to the first run")
+                    .tag("type", job.getType().name())
+                    .register(meterRegistry)
+                    .record(Duration.between(job.getCreatedAt(), LocalDateTime.now()));
+        }
+
+        JobHandler handler = handlers.get(job.getType());
+        long start = System.nanoTime();
+        try {
+            if (handler == null) {
+                throw new IllegalStateException("No handler for job type " + job.getType());
+            }
+            handler.handle(job.getTargetId());
+            backgroundJobRepository.deleteJob(job.getId());
+            record(job, "success", start);
+        } catch (Exception e) {
+            record(job, "failure", start);
+            fail(job, e);
+        }
+    }
+
+    private void fail(BackgroundJob job, Exception e) {
+        String error = e.getClass().getName() + ": " + e.getMessage();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        if (job.getAttempts() >= maxAttempts) {
+            log.error("Job {} {} for target {} failed after {} attempt(s)",
+                    job.getId(), job.getType(), job.getTargetId(), job.getAttempts(), e);
+            backgroundJobRepository.reschedule(job.getId(), JobStatus.FAILED, LocalDateTime.now(), error);
+            return;
+        }
+        Duration delay = backoff.multipliedBy(1L << Math.min(job.getAttempts() - 1, 20));
+        if (delay.compareTo(maxBackoff) > 0) {
+            delay = maxBackoff;
+        }
+        log.warn("Job {} {} for target {} failed (attempt {}), retrying in {}: {}",
+                job.getId(), job.getType(), job.getTargetId(), job.getAttempts(), delay, e.getMessage());
+        backgroundJobRepository.reschedule(job.getId(), JobStatus.PENDING, LocalDateTime.now().plus(delay), error);
+    }
+
+    private void record(BackgroundJob job, String outcome, long start) {
+        Timer.builder("jobs.duration")
+                .description("Background job run time")
+                .tag("type", job.getType().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - start));
+    }
+}
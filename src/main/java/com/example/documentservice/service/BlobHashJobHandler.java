@@ -0,0 +1,25 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.JobType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Задача HASH_BLOB: хеширует объект без SHA-256 и объединяет одинаковые копии (см. {@link StorageBlobService#hashContent}).
+ */
+@Component
+@RequiredArgsConstructor
+public class BlobHashJobHandler implements JobHandler {
+
+    private final StorageBlobService storageBlobService;
+
+    @Override
+    public JobType type() {
+        return JobType.HASH_BLOB;
+    }
+
+    @Override
+    public void handle(Long blobId) {
+        storageBlobService.hashContent(blobId);
+    }
+}
@@ -0,0 +1,560 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.dto.PresignedUploadDto;
+import com.example.documentservice.dto.StoredObjectContentDto;
+import com.example.documentservice.dto.StoredObjectDto;
+import com.example.documentservice.dto.StoredObjectSummaryDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Кэш файлов на локальном диске перед основным хранилищем.
+ * <p>
+ * Прочитанные объекты сохраняются в каталог {@code storage.cache.directory}; объем ограничен
+ * {@code storage.cache.max-size}, вытеснение выполняет Caffeine (W-TinyLFU - сочетание LRU и LFU).
+ * Запись проверяется по ETag объекта в хранилище не чаще раза в {@code storage.cache.revalidate-after}.
+ * <p>
+ * Файл заполняется по ходу первого скачивания: клиент получает данные сразу, а запись попадает в кэш,
+ * только если поток дочитан до конца. Файл вытесненной записи удаляется; уже открытые потоки
+ * дочитывают его без ошибок (на Linux удаление не затрагивает открытые дескрипторы).
+ * Путь, отданный для sendfile ({@link #getLocalCopy}), Tomcat открывает уже после выхода из контроллера,
+ * поэтому файл такой записи при вытеснении удаляется не сразу, а через {@link #SENDFILE_PIN}.
+ * <p>
+ * Файлы лежат в подкаталоге {@code objects} с файлом-меткой {@value #MARKER_FILE_NAME}: при старте очищается
+ * только он, и только если метка на месте, - сам {@code storage.cache.directory} и чужие файлы в нем
+ * не удаляются.
+ * <p>
+ * Перед диском может стоять второй уровень - кэш небольших объектов в памяти
+ * ({@code storage.cache.memory.*}). Он не обращается к хранилищу вовсе: объект под данным ключом
+ * после загрузки не меняется, а при удалении запись сбрасывается в {@link #deleteFile}. Ответ отдается
+ * прямо из закэшированного массива, без выделения буфера на запрос. Caffeine допускает новый объект,
+ * только если он используется чаще вытесняемого (TinyLFU), поэтому разовые скачивания не вымывают
+ * часто используемые файлы.
+ * <p>
+ * Все остальные операции передаются в основное хранилище без изменений.
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "storage.cache.enabled", havingValue = "true")
+public class CachingFileStorageService implements FileStorageService {
+
+    static final String MARKER_FILE_NAME = ".dss-storage-cache";
+    // За это время Tomcat успевает открыть файл для sendfile; дальше удаление передачу не прерывает
+    private static final Duration SENDFILE_PIN = Duration.ofMinutes(1);
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> PRIVATE_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private final FileStorageService delegate;
+    private final Path directory;
+    private final long maxObjectSize;
+    private final long revalidateAfterNanos;
+    private final Cache<String, CachedObject> cache;
+    // null, если кэш в памяти выключен
+    private final Cache<String, byte[]> memoryCache;
+    private final long memoryMaxObjectSize;
+
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final Counter servedBytes;
+    private final Counter filledBytes;
+
+    public CachingFileStorageService(@Qualifier("minioFileStorageService") FileStorageService delegate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${storage.cache.directory}") Path directory,
+                                     @Value("${storage.cache.max-size:1GB}") DataSize maxSize,
+                                     @Value("${storage.cache.max-object-size:256MB}") DataSize maxObjectSize,
+                                     @Value("${storage.cache.revalidate-after:60s}") Duration revalidateAfter,
+                                     @Value("${storage.cache.memory.enabled:false}") boolean memoryEnabled,
+                                     @Value("${storage.cache.memory.max-size:64MB}") DataSize memoryMaxSize,
+                                     @Value("${storage.cache.memory.max-object-size:256KB}") DataSize memoryMaxObjectSize) throws IOException {
+        this.delegate = delegate;
+        this.directory = prepareDirectory(directory);
+        this.maxObjectSize = maxObjectSize.toBytes();
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
+
+        // Вес записи - размер файла в KiB, чтобы крупные файлы не переполняли int
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxSize.toBytes() / 1024))
+                .<String, CachedObject>weigher((key, value) -> (int) Math.min(Integer.MAX_VALUE, (value.size() + 1023) / 1024))
+                .removalListener((String key, CachedObject value, RemovalCause cause) -> {
+                    if (value != null) {
+                        deleteCachedFileWhenUnpinned(value);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "storage.disk-cache");
+        Gauge.builder("storage.disk-cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Объем файлов в дисковом кэше")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.servedBytes = Counter.builder("storage.disk-cache.served.bytes")
+                .description("Байт, отданных из дискового кэша")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.filledBytes = Counter.builder("storage.disk-cache.filled.bytes")
+                .description("Байт, записанных в дисковый кэш из хранилища")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        // Вес записи в памяти - размер массива в байтах; объекты здесь небольшие, int не переполнится
+        this.memoryMaxObjectSize = memoryEnabled ? Math.min(memoryMaxObjectSize.toBytes(), Integer.MAX_VALUE - 8) : -1;
+        if (memoryEnabled) {
+            this.memoryCache = Caffeine.newBuilder()
+                    .maximumWeight(memoryMaxSize.toBytes())
+                    .<String, byte[]>weigher((key, value) -> value.length)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, memoryCache, "storage.memory-cache");
+            Gauge.builder("storage.memory-cache.bytes", memoryCache,
+                            c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                    .description("Объем объектов в кэше в памяти")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        } else {
+            this.memoryCache = null;
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String storageFileName) {
+        byte[] bytes = memoryCache != null ? memoryCache.getIfPresent(storageFileName) : null;
+        if (bytes != null) {
+            // Поток поверх общего массива: ByteArrayInputStream.transferTo пишет его в ответ одним вызовом
+            return new ByteArrayInputStream(bytes);
+        }
+
+        CachedObject cached = validEntry(storageFileName);
+        if (cached != null) {
+            try {
+                if (cached.size() <= memoryMaxObjectSize) {
+                    return new ByteArrayInputStream(putInMemory(storageFileName, Files.readAllBytes(cached.path())));
+                }
+                servedBytes.increment(cached.size());
+                return Files.newInputStream(cached.path());
+            } catch (NoSuchFileException e) {
+                // Запись вытеснили между проверкой и открытием - читаем из хранилища
+                cache.invalidate(storageFileName);
+            } catch (IOException e) {
+                log.warn("Could not read cached file for '{}', falling back to storage", storageFileName, e);
+                cache.invalidate(storageFileName);
+            }
+        }
+
+        // Размер и ETag берутся из ответа на сам GET - отдельный запрос метаданных не нужен
+        StoredObjectContentDto download = delegate.downloadFileWithMetadata(storageFileName);
+        StoredObjectDto storedObject = download.metadata();
+        InputStream inputStream = download.content();
+        if (storedObject.size() < 0 || storedObject.size() > maxObjectSize || storedObject.etag() == null) {
+            return inputStream;
+        }
+        if (storedObject.size() <= memoryMaxObjectSize) {
+            // Небольшой объект читается целиком и кэшируется только в памяти
+            return new ByteArrayInputStream(putInMemory(storageFileName, readFully(inputStream, storedObject.size())));
+        }
+        try {
+            return new CacheFillingInputStream(inputStream, storageFileName, storedObject);
+        } catch (IOException e) {
+            log.warn("Could not create cache file for '{}'", storageFileName, e);
+            return inputStream;
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String storageFileName, long offset, long length) {
+        byte[] bytes = memoryCache != null ? memoryCache.getIfPresent(storageFileName) : null;
+        if (bytes != null && offset + length <= bytes.length) {
+            return new ByteArrayInputStream(bytes, (int) offset, (int) length);
+        }
+
+        CachedObject cached = validEntry(storageFileName);
+        if (cached != null) {
+            try {
+                FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ);
+                channel.position(offset);
+                servedBytes.increment(length);
+                return BoundedInputStream.builder().setInputStream(Channels.newInputStream(channel)).setMaxCount(length).get();
+            } catch (IOException e) {
+                cache.invalidate(storageFileName);
+            }
+        }
+        // Диапазоны кэш не заполняют: в файле оказалась бы только часть объекта
+        return delegate.downloadFile(storageFileName, offset, length);
+    }
+
+    @Override
+    public Optional<Path> getLocalCopy(String storageFileName) {
+        // Объект из памяти отдается быстрее, чем через файл
+        if (memoryCache != null && memoryCache.getIfPresent(storageFileName) != null) {
+            return Optional.empty();
+        }
+        CachedObject cached = validEntry(storageFileName);
+        if (cached == null || !Files.exists(cached.path())) {
+            return Optional.empty();
+        }
+        cached.pinnedUntil = System.nanoTime() + SENDFILE_PIN.toNanos();
+        servedBytes.increment(cached.size());
+        return Optional.of(cached.path());
+    }
+
+    @Override
+    public StoredObjectContentDto downloadFileWithMetadata(String storageFileName) {
+        return delegate.downloadFileWithMetadata(storageFileName);
+    }
+
+    @Override
+    public void deleteFile(String storageFileName) throws Exception {
+        cache.invalidate(storageFileName);
+        if (memoryCache != null) {
+            memoryCache.invalidate(storageFileName);
+        }
+        delegate.deleteFile(storageFileName);
+    }
+
+    @Override
+    public List<String> deleteFiles(Collection<String> storageFileNames) {
+        cache.invalidateAll(storageFileNames);
+        if (memoryCache != null) {
+            memoryCache.invalidateAll(storageFileNames);
+        }
+        return delegate.deleteFiles(storageFileNames);
+    }
+
+    /**
+     * Возвращает запись кэша, если она есть и содержимое в хранилище не изменилось.
+     */
+    private CachedObject validEntry(String storageFileName) {
+        CachedObject cached = cache.getIfPresent(storageFileName);
+        if (cached == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - cached.validatedAt < revalidateAfterNanos) {
+            return cached;
+        }
+
+        Optional<StoredObjectDto> storedObject = delegate.statFile(storageFileName);
+        if (storedObject.isPresent() && storedObject.get().etag() != null
+            && storedObject.get().etag().equals(cached.etag())) {
+            cached.validatedAt = now;
+            return cached;
+        }
+        log.debug("Cached copy of '{}' is stale, removing it", storageFileName);
+        cache.asMap().remove(storageFileName, cached);
+        return null;
+    }
+
+    private byte[] putInMemory(String storageFileName, byte[] bytes) {
+        // Решение, оставить ли объект, Caffeine примет по частоте обращений при вытеснении
+        memoryCache.put(storageFileName, bytes);
+        return bytes;
+    }
+
+    private byte[] readFully(InputStream inputStream, long size) {
+        try (InputStream in = inputStream) {
+            byte[] bytes = in.readNBytes((int) size);
+            if (bytes.length != size) {
+                throw new IOException("Object ended after " + bytes.length + " bytes, expected " + size);
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Готовит подкаталог для файлов кэша. Записи не переживают перезапуск, поэтому файлы прошлого запуска
+     * удаляются, но только из каталога с меткой: настроенный путь мог указать на чужие данные.
+     * В кэше лежит содержимое документов, поэтому подкаталог и файлы доступны только владельцу процесса
+     * (на POSIX-системах), независимо от umask и прав на {@code directory}.
+     */
+    static Path prepareDirectory(Path directory) throws IOException {
+        Path objects = directory.resolve("objects");
+        Path marker = objects.resolve(MARKER_FILE_NAME);
+        if (Files.exists(objects)) {
+            if (!Files.isRegularFile(marker)) {
+                throw new IllegalStateException("Cache directory '" + objects
+                                                + "' exists but was not created by the storage cache, refusing to clear it");
+            }
+            FileSystemUtils.deleteRecursively(objects);
+        }
+        if (isPosix(directory)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+            Files.createDirectory(objects, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+            // Права при создании урезаются umask; выставляем их явно
+            Files.setPosixFilePermissions(objects, PRIVATE_DIRECTORY);
+        } else {
+            Files.createDirectories(objects);
+        }
+        createPrivateFile(marker).close();
+        return objects;
+    }
+
+    /**
+     * Создает новый файл, доступный только владельцу процесса (на POSIX-системах).
+     */
+    private static SeekableByteChannel createPrivateFile(Path file) throws IOException {
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        if (isPosix(file.getParent())) {
+            return Files.newByteChannel(file, options, PosixFilePermissions.asFileAttribute(PRIVATE_FILE));
+        }
+        return Files.newByteChannel(file, options);
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private void deleteCachedFileWhenUnpinned(CachedObject cached) {
+        long pinned = cached.pinnedUntil - System.nanoTime();
+        if (pinned > 0) {
+            CompletableFuture.runAsync(() -> deleteCachedFile(cached),
+                    CompletableFuture.delayedExecutor(pinned, TimeUnit.NANOSECONDS));
+        } else {
+            deleteCachedFile(cached);
+        }
+    }
+
+    private void deleteCachedFile(CachedObject cached) {
+        try {
+            Files.deleteIfExists(cached.path());
+            cachedBytes.addAndGet(-cached.size());
+        } catch (IOException e) {
+            log.warn("Could not delete cached file '{}'", cached.path(), e);
+        }
+    }
+
+    // --- Остальные операции кэш не затрагивают ---
+
+    @Override
+    public void uploadFile(MultipartFile file, String storageFileName) {
+        delegate.uploadFile(file, storageFileName);
+    }
+
+    @Override
+    public void uploadStream(InputStream inputStream, long size, String contentType, String storageFileName) {
+        delegate.uploadStream(inputStream, size, contentType, storageFileName);
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String storageFileName, String contentDisposition, String contentType, Duration expiry) {
+        return delegate.getPresignedDownloadUrl(storageFileName, contentDisposition, contentType, expiry);
+    }
+
+    @Override
+    public PresignedUploadDto createPresignedUpload(String storageFileName, String contentType, long size, Duration expiry) {
+        return delegate.createPresignedUpload(storageFileName, contentType, size, expiry);
+    }
+
+    @Override
+    public void completeMultipartUpload(String storageFileName, String uploadId) {
+        delegate.completeMultipartUpload(storageFileName, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String storageFileName, String uploadId) {
+        delegate.abortMultipartUpload(storageFileName, uploadId);
+    }
+
+    @Override
+    public Optional<StoredObjectDto> statFile(String storageFileName) {
+        return delegate.statFile(storageFileName);
+    }
+
+    @Override
+    public Stream<StoredObjectSummaryDto> listFiles() {
+        return delegate.listFiles();
+    }
+
+    @Override
+    public String copyFile(String sourceObjectName) throws Exception {
+        return delegate.copyFile(sourceObjectName);
+    }
+
+    /**
+     * Запись кэша: файл на диске и ETag объекта, из которого он получен.
+     */
+    private static final class CachedObject {
+
+        private final Path path;
+        private final String etag;
+        private final long size;
+        private volatile long validatedAt;
+        // До этого момента (System.nanoTime) путь может быть еще не открыт Tomcat для sendfile
+        private volatile long pinnedUntil = System.nanoTime();
+
+        private CachedObject(Path path, String etag, long size, long validatedAt) {
+            this.path = path;
+            this.etag = etag;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        String etag() {
+            return etag;
+        }
+
+        long size() {
+            return size;
+        }
+    }
+
+    /**
+     * Отдает поток из хранилища и одновременно пишет его во временный файл.
+     * Запись добавляется в кэш только после того, как прочитан весь объект ожидаемого размера.
+     */
+    private final class CacheFillingInputStream extends FilterInputStream {
+
+        private final String storageFileName;
+        private final StoredObjectDto storedObject;
+        private final Path file;
+        private OutputStream out;
+        private long written;
+
+        private CacheFillingInputStream(InputStream in, String storageFileName, StoredObjectDto storedObject) throws IOException {
+            super(in);
+            this.storageFileName = storageFileName;
+            this.storedObject = storedObject;
+            this.file = directory.resolve(UUID.randomUUID() + ".bin");
+            this.out = Channels.newOutputStream(createPrivateFile(file));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                complete();
+            } else if (n > 0) {
+                write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропущенные байты не попадут в файл - такую копию кэшировать нельзя
+            discard();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(b, off, len);
+                written += len;
+            } catch (IOException e) {
+                // Ошибка диска не должна прерывать скачивание
+                log.warn("Could not write cache file for '{}'", storageFileName, e);
+                discard();
+            }
+        }
+
+        private void complete() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                if (written != storedObject.size()) {
+                    Files.deleteIfExists(file);
+                    return;
+                }
+                cachedBytes.addAndGet(written);
+                filledBytes.increment(written);
+                cache.put(storageFileName, new CachedObject(file, storedObject.etag(), written, System.nanoTime()));
+            } catch (IOException e) {
+                log.warn("Could not finish cache file for '{}'", storageFileName, e);
+                discard();
+            }
+        }
+
+        private void discard() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not remove incomplete cache file '{}'", file, e);
+            } finally {
+                out = null;
+            }
+        }
+    }
+}
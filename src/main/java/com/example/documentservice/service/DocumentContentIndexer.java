@@ -0,0 +1,180 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.Document;
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.entity.JobType;
+import com.example.documentservice.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Индексация содержимого документов для полнотекстового поиска (задача INDEX_CONTENT).
+ * <p>
+ * Текст извлекается Apache Tika (PDF, документы Office, HTML, текстовые файлы и т.д.) и сохраняется
+ * в БД как tsvector: триггер добавляет его к поисковому вектору документа, поэтому поиск по содержимому
+ * использует тот же GIN-индекс, что и поиск по имени, и удаляется вместе со строкой документа.
+ * <p>
+ * Задача ставится в очередь вместе с записью документа и выполняется {@link BackgroundJobWorker}.
+ * Текст извлекается один раз на объект в хранилище: документы с тем же файлом получают готовый вектор.
+ * <p>
+ * Разбор идет в отдельном потоке и ограничен {@code search.content.timeout}: на специально собранном файле
+ * Tika может работать сколь угодно долго. Файл, не разобранный за это время, индексируется без текста.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentContentIndexer implements JobHandler {
+
+    private final DocumentRepository documentRepository;
+    private final FileStorageService fileStorageService;
+
+    // Файлы крупнее не разбираются: они помечаются проиндексированными без текста
+    @Value("${search.content.max-file-size:50MB}")
+    private DataSize maxFileSize;
+
+    // Сколько символов текста индексировать (размер tsvector в PostgreSQL ограничен 1 МБ)
+    @Value("${search.content.max-chars:100000}")
+    private int maxChars;
+
+    // Больше этого времени разбор одного файла не ждем; должно быть меньше jobs.lease
+    @Value("${search.content.timeout:60s}")
+    private Duration timeout;
+
+    private final Parser parser = new AutoDetectParser();
+    private ExecutorService parserExecutor;
+
+    @PostConstruct
+    void init() {
+        // Число одновременных разборов ограничено потоками BackgroundJobWorker: каждый ждет свой разбор
+        AtomicInteger counter = new AtomicInteger();
+        this.parserExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "content-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        parserExecutor.shutdownNow();
+    }
+
+    @Override
+    public JobType type() {
+        return JobType.INDEX_CONTENT;
+    }
+
+    /**
+     * Ошибки чтения из хранилища пробрасываются - задача будет повторена.
+     * @param documentId ID документа
+     */
+    @Override
+    public void handle(Long documentId) throws IOException {
+        Document document = documentRepository.findByIdAndStatus(documentId, DocumentStatus.ACTIVE).orElse(null);
+        if (document == null || document.getBlob() == null || document.getContentIndexedAt() != null) {
+            // Документ удален или уже проиндексирован
+            return;
+        }
+        // Идентификатор берется из LAZY-прокси без обращения к БД
+        Long blobId = document.getBlob().getId();
+        if (documentRepository.copyContentIndex(blobId) > 0) {
+            return;
+        }
+
+        String text = "";
+        if (document.getSize() <= maxFileSize.toBytes()) {
+            try (InputStream in = fileStorageService.downloadFile(document.getStorageFileName())) {
+                text = extractTextWithTimeout(in, document.getFileName(), document.getFileType());
+            } catch (TikaException | SAXException e) {
+                // Поврежденный, зашифрованный или неподдерживаемый файл: индексируется без текста, без повторов
+                log.info("Could not extract text from document {} ('{}'): {}",
+                        documentId, document.getFileName(), e.getMessage());
+            } catch (TimeoutException e) {
+                // Повтор упал бы по тому же сроку
+                log.warn("Gave up extracting text from document {} ('{}') after {}",
+                        documentId, document.getFileName(), timeout);
+            }
+        }
+        int updated = documentRepository.updateContentIndex(blobId, text);
+        log.debug("Indexed {} characters of content for {} document(s) with blob {}", text.length(), updated, blobId);
+    }
+
+    private String extractTextWithTimeout(InputStream in, String fileName, String contentType)
+            throws IOException, TikaException, SAXException, TimeoutException {
+        Future<String> future = parserExecutor.submit(() -> extractText(in, fileName, contentType));
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Tika не проверяет флаг прерывания; закрытый поток обрывает разбор на следующем чтении из хранилища
+            future.cancel(true);
+            in.close();
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting text");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof TikaException tikaException) {
+                throw tikaException;
+            }
+            if (cause instanceof SAXException saxException) {
+                throw saxException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private String extractText(InputStream in, String fileName, String contentType)
+            throws IOException, TikaException, SAXException {
+        BodyContentHandler handler = new BodyContentHandler(maxChars);
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        metadata.set(Metadata.CONTENT_TYPE, contentType);
+        try {
+            parser.parse(in, handler, metadata, new ParseContext());
+        } catch (SAXException e) {
+            // Достигнут лимит символов: индексируем начало документа
+            if (!WriteLimitReachedException.isWriteLimitReached(e)) {
+                throw e;
+            }
+        }
+        // PostgreSQL не принимает символ \0 в тексте
+        return handler.toString().replace('\u0000', ' ');
+    }
+}
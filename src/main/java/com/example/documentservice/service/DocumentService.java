@@ -1,26 +1,158 @@
 package com.example.documentservice.service;
 
+import com.example.documentservice.dto.BulkUploadResponse;
+import com.example.documentservice.dto.ContentHashUploadRequest;
+import com.example.documentservice.dto.CursorPage;
+import com.example.documentservice.dto.DirectUploadRequest;
+import com.example.documentservice.dto.DirectUploadResponse;
+import com.example.documentservice.dto.DocumentFacets;
 import com.example.documentservice.dto.DocumentShareDto;
+import com.example.documentservice.dto.DownloadMode;
 import com.example.documentservice.dto.FileDownloadDto;
+import com.example.documentservice.dto.TagMatchMode;
 import com.example.documentservice.dto.DocumentDto;
 import com.example.documentservice.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.Set;
 
 public interface DocumentService {
 
     DocumentDto uploadDocument(MultipartFile file, String category, Set<String> tags, User owner);
 
+    /**
+     * Загружает документ напрямую из потока тела запроса, минуя MultipartFile.
+     * Запись о документе создается только после того, как объект полностью сохранен в хранилище.
+     * @param inputStream Поток с содержимым файла
+     * @param fileName Исходное имя файла
+     * @param contentType MIME-тип файла
+     * @param size Размер в байтах или -1, если он заранее неизвестен
+     * @param category Категория документа
+     * @param tags Теги документа
+     * @param owner Владелец документа
+     * @return DTO сохраненного документа
+     */
+    DocumentDto uploadDocumentStream(InputStream inputStream, String fileName, String contentType, long size,
+                                     String category, Set<String> tags, User owner);
+
+    /**
+     * Загружает документы из ZIP-архива, читая его последовательно из потока тела запроса.
+     * Файлы архива отправляются в хранилище параллельно, записи о документах сохраняются пачками.
+     * Ошибка одного файла не отменяет загрузку остальных.
+     * @param archive Поток с ZIP-архивом
+     * @param category Категория всех документов
+     * @param tags Теги всех документов
+     * @param owner Владелец документов
+     * @return Результат по каждому файлу архива
+     */
+    BulkUploadResponse uploadDocumentArchive(InputStream archive, String category, Set<String> tags, User owner);
+
+    /**
+     * Загрузка без передачи файла: если содержимое с таким SHA-256 и размером уже хранится,
+     * документ сразу создается со ссылкой на него.
+     * @param request Хеш, размер, имя файла и метаданные документа
+     * @param owner Владелец документа
+     * @return DTO созданного документа или пустой Optional, если такого содержимого нет и файл нужно загрузить
+     */
+    Optional<DocumentDto> uploadDocumentByHash(ContentHashUploadRequest request, User owner);
+
+    /**
+     * Первый шаг прямой загрузки: создает документ в статусе PENDING и выдает подписанные ссылки,
+     * по которым клиент загружает файл в хранилище сам, минуя приложение.
+     * @param request Имя, тип, размер файла и метаданные документа
+     * @param owner Владелец документа
+     * @return ID документа и ссылки для загрузки
+     */
+    DirectUploadResponse initiateDirectUpload(DirectUploadRequest request, User owner);
+
+    /**
+     * Второй шаг прямой загрузки: проверяет загруженный объект (размер и, если передан, ETag)
+     * и делает документ доступным. Повторный вызов для уже подтвержденного документа возвращает его же.
+     * @param id ID документа в статусе PENDING
+     * @param etag ETag, полученный клиентом от хранилища, или null
+     * @param owner Владелец документа
+     * @return DTO подтвержденного документа
+     */
+    DocumentDto commitDirectUpload(Long id, String etag, User owner);
+
+    /**
+     * Удаляет прямую загрузку, не подтвержденную до указанного момента, вместе с объектом в хранилище.
+     * Вызывается фоновой очисткой.
+     * @param id ID документа
+     * @param createdBefore Загрузки, начатые раньше этого момента, считаются брошенными
+     * @return true, если документ был удален
+     */
+    boolean removeExpiredUpload(Long id, LocalDateTime createdBefore);
+
     FileDownloadDto downloadDocument(Long id, User user);
 
+    /**
+     * Проверяет права и готовит скачивание документа выбранным способом.
+     * @param id ID документа
+     * @param user Текущий пользователь
+     * @param mode Способ отдачи; null - способ по умолчанию из настроек
+     * @return DTO с потоком файла или подписанной ссылкой для редиректа
+     */
+    FileDownloadDto downloadDocument(Long id, User user, DownloadMode mode);
+
     void deleteDocument(Long id, User user) throws Exception;
 
-    Page<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, String query, Pageable pageable);
+    /**
+     * Документы пользователя постранично.
+     * @param tagMatch Как сопоставлять несколько тегов: ANY (любой) или ALL (все); null - ANY
+     */
+    Page<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                          String query, Pageable pageable);
+
+    /**
+     * Документы пользователя по курсору, от новых к старым. Время ответа не зависит от глубины страницы.
+     * @param cursor Токен из предыдущего ответа (nextCursor) или null для первой страницы
+     * @param size Размер страницы (не больше 100)
+     * @return Страница и токен следующей страницы
+     */
+    CursorPage<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                String query, String cursor, int size);
+
+    Page<DocumentDto> getAllDocumentsForAdmin(Pageable pageable, String category, Set<String> tags, TagMatchMode tagMatch,
+                                              String query, String username);
+
+    /**
+     * Все документы по курсору, от новых к старым (для администратора).
+     * @param cursor Токен из предыдущего ответа (nextCursor) или null для первой страницы
+     * @param size Размер страницы (не больше 100)
+     */
+    CursorPage<DocumentDto> getAllDocumentsForAdmin(String cursor, int size, String category, Set<String> tags,
+                                                    TagMatchMode tagMatch, String query, String username);
+
+    /**
+     * Полнотекстовый поиск по имени, категории, тегам и содержимому файлов среди документов пользователя
+     * и расшаренных ему. Результаты отсортированы по релевантности.
+     * Содержимое индексируется в фоне после загрузки, поэтому только что загруженный файл
+     * находится по тексту не сразу.
+     * @param query Строка поиска (слова ищутся как префиксы)
+     * @return Страница DTO
+     * @throws com.example.documentservice.exception.InvalidRequestException если в запросе нет ни одного слова
+     */
+    Page<DocumentDto> searchDocuments(User user, String query, Pageable pageable);
+
+    /**
+     * Счетчики по категориям и тегам документов пользователя для текущего фильтра.
+     * Значения кэшируются на короткое время (search.facets.ttl) и могут немного отставать от списка.
+     */
+    DocumentFacets getUserDocumentFacets(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                         String query);
 
-    Page<DocumentDto> getAllDocumentsForAdmin(Pageable pageable, String category, Set<String> tags, String query, String username);
+    /**
+     * Счетчики по категориям и тегам всех документов для текущего фильтра (для администратора).
+     * Значения кэшируются на короткое время (search.facets.ttl) и могут немного отставать от списка.
+     */
+    DocumentFacets getDocumentFacetsForAdmin(String category, Set<String> tags, TagMatchMode tagMatch,
+                                             String query, String username);
 
     /**
      * Расшаривает документ другому пользователю.
@@ -38,6 +170,13 @@ public interface DocumentService {
      */
     Page<DocumentDto> getSharedWithMe(User currentUser, Pageable pageable);
 
+    /**
+     * Документы, расшаренные текущему пользователю, по курсору, от новых к старым.
+     * @param cursor Токен из предыдущего ответа (nextCursor) или null для первой страницы
+     * @param size Размер страницы (не больше 100)
+     */
+    CursorPage<DocumentDto> getSharedWithMe(User currentUser, String cursor, int size);
+
     /**
      * Сохраняет копию расшаренного документа для текущего пользователя.
      * @param sourceDocumentId ID исходного документа
@@ -51,6 +190,13 @@ public interface DocumentService {
     // Получить список документов, отправленных текущим пользователем.
     Page<DocumentShareDto> getSentByMe(User currentUser, Pageable pageable);
 
+    /**
+     * Отправленные текущим пользователем документы по курсору, от новых отправок к старым.
+     * @param cursor Токен из предыдущего ответа (nextCursor) или null для первой страницы
+     * @param size Размер страницы (не больше 100)
+     */
+    CursorPage<DocumentShareDto> getSentByMe(User currentUser, String cursor, int size);
+
     //Отозвать право доступа к документу.
     void revokeShare(Long shareId, User currentUser);
 }
\ No newline at end of file
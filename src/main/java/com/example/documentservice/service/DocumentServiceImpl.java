@@ -1,34 +1,94 @@
 package com.example.documentservice.service;
 
+import com.example.documentservice.dto.BulkUploadResponse;
+import com.example.documentservice.dto.BulkUploadResultDto;
+import com.example.documentservice.dto.ContentHashUploadRequest;
+import com.example.documentservice.dto.CursorPage;
+import com.example.documentservice.dto.DirectUploadRequest;
+import com.example.documentservice.dto.DirectUploadResponse;
+import com.example.documentservice.dto.DocumentFacets;
 import com.example.documentservice.dto.DocumentDto;
 import com.example.documentservice.dto.DocumentShareDto;
+import com.example.documentservice.dto.DownloadMode;
+import com.example.documentservice.dto.FacetCount;
 import com.example.documentservice.dto.FileDownloadDto;
+import com.example.documentservice.dto.PageCursor;
+import com.example.documentservice.dto.PresignedUploadDto;
+import com.example.documentservice.dto.SearchMode;
+import com.example.documentservice.dto.StoredObjectDto;
+import com.example.documentservice.dto.TagMatchMode;
+import com.example.documentservice.dto.UploadedContentDto;
 import com.example.documentservice.entity.Document;
 import com.example.documentservice.entity.DocumentShare;
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.entity.JobType;
 import com.example.documentservice.entity.Role;
+import com.example.documentservice.entity.StorageBlob;
 import com.example.documentservice.entity.User;
+import com.example.documentservice.exception.ArchiveLimitExceededException;
+import com.example.documentservice.exception.InvalidRequestException;
 import com.example.documentservice.repository.DocumentRepository;
 import com.example.documentservice.repository.DocumentShareRepository;
 import com.example.documentservice.repository.UserRepository;
 import com.example.documentservice.repository.specification.DocumentSpecification;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -36,36 +96,159 @@ import java.util.UUID;
 @Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
+    // Максимальный размер страницы при чтении по курсору
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final DocumentRepository documentRepository;
     private final FileStorageService fileStorageService;
     private final UserRepository userRepository;
     private final DocumentShareRepository documentShareRepository;
+    private final StorageBlobService storageBlobService;
+    private final MeterRegistry meterRegistry;
+    private final BackgroundJobService backgroundJobService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    // Способ скачивания по умолчанию: PROXY, REDIRECT или AUTO (по размеру файла)
+    @Value("${storage.download.mode:PROXY}")
+    private DownloadMode defaultDownloadMode;
+
+    @Value("${storage.download.redirect-threshold:8MB}")
+    private DataSize redirectThreshold;
+
+    @Value("${storage.download.presigned-expiry:5m}")
+    private Duration presignedDownloadExpiry;
+
+    // Поиск по параметру query: FULL_TEXT (индекс tsvector) или LIKE (подстрока в имени файла)
+    @Value("${search.mode:FULL_TEXT}")
+    private SearchMode searchMode;
+
+    // Время жизни ссылок для прямой загрузки в хранилище
+    @Value("${storage.upload.direct.presigned-expiry:1h}")
+    private Duration directUploadExpiry;
+
+    // Счетчики для фильтров списка: время жизни, число записей и сколько значений возвращать
+    @Value("${search.facets.ttl:30s}")
+    private Duration facetsTtl;
+
+    @Value("${search.facets.max-size:1000}")
+    private long facetsCacheMaxSize;
+
+    @Value("${search.facets.limit:20}")
+    private int facetsLimit;
+
+    // Пакетная загрузка архива: сколько файлов одновременно отправляется в хранилище,
+    // до какого размера файл читается из архива в память и сколько документов сохраняется в одной транзакции
+    @Value("${storage.upload.bulk.concurrency:8}")
+    private int bulkConcurrency;
+
+    @Value("${storage.upload.bulk.buffer-size:8MB}")
+    private DataSize bulkBufferSize;
+
+    @Value("${storage.upload.bulk.batch-size:50}")
+    private int bulkBatchSize;
+
+    // Ограничения архива: число файлов, размер файла, суммарный размер распакованных данных и степень сжатия
+    @Value("${storage.upload.bulk.max-entries:10000}")
+    private int bulkMaxEntries;
+
+    @Value("${storage.upload.bulk.max-entry-size:1GB}")
+    private DataSize bulkMaxEntrySize;
+
+    @Value("${storage.upload.bulk.max-total-size:10GB}")
+    private DataSize bulkMaxTotalSize;
+
+    @Value("${storage.upload.bulk.max-compression-ratio:100}")
+    private int bulkMaxCompressionRatio;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private Cache<FacetKey, List<FacetCount>> facetCounts;
+    private ExecutorService bulkUploadExecutor;
+
+    /**
+     * Ключ кэша счетчиков: фильтр, по которому они посчитаны, без значения самого счетчика
+     * (для категорий - без категории, для тегов - без тегов).
+     */
+    private record FacetKey(Facet facet, Long ownerId, String category, Set<String> tags, TagMatchMode tagMatch,
+                            String query, String username) {
+    }
+
+    private enum Facet { CATEGORY, TAG }
+
+    /**
+     * Файл архива при пакетной загрузке: объект в хранилище сохраняется асинхронно.
+     */
+    private record ArchiveEntry(String path, String fileName, String fileType, CompletableFuture<UploadedContentDto> content) {
+    }
+
+    private record ArchiveDocument(int index, String path, Document document, UploadedContentDto content) {
+    }
+
+    @PostConstruct
+    void init() {
+        // Одинаковые фильтры на страницах открываются часто, а группировка по всем документам дорогая:
+        // счетчики пересчитываются не чаще раза в facetsTtl
+        this.facetCounts = Caffeine.newBuilder()
+                .expireAfterWrite(facetsTtl)
+                .maximumSize(facetsCacheMaxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, facetCounts, "document.facets");
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.bulkUploadExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulk-upload-", 1).factory())
+                : Executors.newFixedThreadPool(Math.max(1, bulkConcurrency), runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bulkUploadExecutor.shutdown();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DocumentDto> getAllDocumentsForAdmin(Pageable pageable, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                     String query, String username) {
+        return documentRepository.findDocumentDtos(adminDocumentsSpec(category, tags, tagMatch, query, username), pageable);
+    }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<DocumentDto> getAllDocumentsForAdmin(Pageable pageable, String category, Set<String> tags, String query, String username) {
-        Specification<Document> spec = (root, q, criteriaBuilder) -> criteriaBuilder.conjunction();
+    public CursorPage<DocumentDto> getAllDocumentsForAdmin(String cursor, int size, String category, Set<String> tags,
+                                                           TagMatchMode tagMatch, String query, String username) {
+        return findDocumentPage(adminDocumentsSpec(category, tags, tagMatch, query, username), cursor, size);
+    }
+
+    private Specification<Document> adminDocumentsSpec(String category, Set<String> tags, TagMatchMode tagMatch,
+                                                       String query, String username) {
+        Specification<Document> spec = DocumentSpecification.isActive();
 
         // И добавляем к ней условия
         if (StringUtils.hasText(category)) {
             spec = spec.and(DocumentSpecification.byCategory(category));
         }
         if (tags != null && !tags.isEmpty()) {
-            spec = spec.and(DocumentSpecification.byTags(tags));
+            spec = spec.and(DocumentSpecification.byTags(tags, tagMatch));
         }
         if (StringUtils.hasText(query)) {
-            spec = spec.and(DocumentSpecification.byFileName(query));
+            spec = spec.and(byQuery(query));
         }
         if (StringUtils.hasText(username)) {
             spec = spec.and(DocumentSpecification.byUsername(username));
         }
-
-        return documentRepository.findAll(spec, pageable).map(this::mapToDto);
+        return spec;
     }
 
     @Override
     public void shareDocument(Long documentId, String recipientUsername, User sender) {
-        Document document = documentRepository.findById(documentId)
+        Document document = documentRepository.findByIdAndStatus(documentId, DocumentStatus.ACTIVE)
                 .orElseThrow(() -> new EntityNotFoundException("Document not found with id: " + documentId));
 
         // Проверка прав: только владелец может расшарить документ
@@ -79,12 +262,12 @@ public class DocumentServiceImpl implements DocumentService {
 
         // Проверка на расшаривание самому себе
         if (sender.getId().equals(recipient.getId())) {
-            throw new IllegalArgumentException("You cannot share a document with yourself");
+            throw new InvalidRequestException("You cannot share a document with yourself");
         }
 
         // Проверка, не был ли документ уже расшарен этому пользователю
         if (documentShareRepository.existsByDocumentAndRecipient(document, recipient)) {
-            throw new IllegalArgumentException("Document is already shared with user: " + recipientUsername);
+            throw new InvalidRequestException("Document is already shared with user: " + recipientUsername);
         }
 
         // Создание и сохранение записи о праве доступа
@@ -106,11 +289,19 @@ public class DocumentServiceImpl implements DocumentService {
         return documents.map(this::mapToDto);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<DocumentDto> getSharedWithMe(User currentUser, String cursor, int size) {
+        Specification<Document> spec = DocumentSpecification.sharedWith(currentUser.getId())
+                .and(DocumentSpecification.isActive());
+        return findDocumentPage(spec, cursor, size);
+    }
+
     @Override
     @Transactional
     public DocumentDto saveSharedDocument(Long sourceDocumentId, User currentUser) throws Exception {
         // 1. Проверяем, что исходный документ существует
-        Document sourceDocument = documentRepository.findById(sourceDocumentId)
+        Document sourceDocument = documentRepository.findByIdAndStatus(sourceDocumentId, DocumentStatus.ACTIVE)
                 .orElseThrow(() -> new EntityNotFoundException("Source document not found with id: " + sourceDocumentId));
 
         // 2. Проверка безопасности: убеждаемся, что документ действительно расшарен этому пользователю
@@ -123,11 +314,13 @@ public class DocumentServiceImpl implements DocumentService {
 
         // 3. Проверка логики: нельзя сохранить свой же документ
         if (sourceDocument.getOwner().getId().equals(currentUser.getId())) {
-            throw new IllegalArgumentException("You cannot save a document you already own.");
+            throw new InvalidRequestException("You cannot save a document you already own.");
         }
 
-        // 4. Копируем файл в MinIO
-        String newStorageFileName = fileStorageService.copyFile(sourceDocument.getStorageFileName());
+        // 4. Файл не копируется: новый документ ссылается на тот же объект в MinIO.
+        // Объекты не изменяются после загрузки, поэтому общая ссылка безопасна, а сохранение
+        // занимает одинаковое время для файла любого размера.
+        StorageBlob blob = storageBlobService.addReference(sourceDocument.getBlob());
 
         // 5. Создаем новую запись в БД
         Document newDocument = Document.builder()
@@ -136,11 +329,14 @@ public class DocumentServiceImpl implements DocumentService {
                 .size(sourceDocument.getSize())
                 .category(sourceDocument.getCategory())
                 .tags(sourceDocument.getTags() != null ? new java.util.HashSet<>(sourceDocument.getTags()) : new java.util.HashSet<>())
-                .storageFileName(newStorageFileName)
+                .storageFileName(blob.getStorageKey())
+                .blob(blob)
+                .etag(sourceDocument.getEtag())
                 .owner(currentUser) // <-- Новый владелец!
                 .build();
 
         Document savedDocument = documentRepository.save(newDocument);
+        enqueueProcessing(savedDocument);
         log.info("User '{}' saved a copy of document '{}' (Source ID: {}, New ID: {})",
                 currentUser.getUsername(), savedDocument.getFileName(), sourceDocumentId, savedDocument.getId());
 
@@ -170,6 +366,19 @@ public class DocumentServiceImpl implements DocumentService {
         return shares.map(this::mapToShareDto);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<DocumentShareDto> getSentByMe(User currentUser, String cursor, int size) {
+        int limit = cursorPageSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        List<DocumentShare> shares = after == null
+                ? documentShareRepository.findSentByOwner(currentUser.getId(), Limit.of(limit + 1))
+                : documentShareRepository.findSentByOwnerAfter(currentUser.getId(), after.timestamp(), after.id(),
+                        Limit.of(limit + 1));
+        return toCursorPage(shares.stream().map(this::mapToShareDto).toList(), limit,
+                dto -> new PageCursor(dto.sharedAt(), dto.shareId()));
+    }
+
     @Override
     @Transactional
     public void revokeShare(Long shareId, User currentUser) {
@@ -187,6 +396,7 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Не держим соединение с БД, пока идет передача файла
     public DocumentDto uploadDocument(MultipartFile file, String category, Set<String> tags, User owner) {
         // Проверяем, существует ли пользователь (на всякий случай)
         User managedOwner = userRepository.findById(owner.getId())
@@ -195,48 +405,628 @@ public class DocumentServiceImpl implements DocumentService {
         String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
         String storageFileName = UUID.randomUUID() + "-" + originalFileName;
 
-        // Сохраняем файл в MinIO
-        fileStorageService.uploadFile(file, storageFileName);
+        // Сохраняем файл в MinIO; если такое содержимое уже есть, документ сошлется на существующий объект
+        UploadedContentDto content;
+        try (InputStream inputStream = file.getInputStream()) {
+            content = storageBlobService.upload(inputStream, file.getSize(), file.getContentType(), storageFileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading uploaded file", e);
+        }
 
         // Создаем и сохраняем метаданные в PostgreSQL
         Document document = Document.builder()
                 .fileName(originalFileName)
-                .storageFileName(storageFileName)
                 .fileType(file.getContentType())
-                .size(file.getSize())
                 .category(category)
-                .tags(tags)
+                .tags(tags != null ? new HashSet<>(tags) : new HashSet<>())
                 .owner(managedOwner)
                 .build();
 
-        Document savedDocument = documentRepository.save(document);
+        Document savedDocument = saveUploaded(document, content);
 
         // Преобразуем сохраненную сущность в DTO и возвращаем ее
         return mapToDto(savedDocument);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Не держим соединение с БД, пока идет передача файла
+    public DocumentDto uploadDocumentStream(InputStream inputStream, String fileName, String contentType, long size,
+                                            String category, Set<String> tags, User owner) {
+        User managedOwner = userRepository.findById(owner.getId())
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+
+        if (!StringUtils.hasText(fileName)) {
+            throw new InvalidRequestException("File name must not be empty");
+        }
+        String originalFileName = StringUtils.cleanPath(fileName);
+        String storageFileName = UUID.randomUUID() + "-" + originalFileName;
+        String fileType = StringUtils.hasText(contentType) ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        // Передаем поток в MinIO, попутно считая реальный размер и хеш файла
+        UploadedContentDto content = storageBlobService.upload(inputStream, size, fileType, storageFileName);
+
+        // Объект сохранен, теперь создаем запись о документе
+        Document document = Document.builder()
+                .fileName(originalFileName)
+                .fileType(fileType)
+                .category(category)
+                .tags(tags != null ? new HashSet<>(tags) : new HashSet<>())
+                .owner(managedOwner)
+                .build();
+
+        Document savedDocument = saveUploaded(document, content);
+        log.info("User '{}' uploaded document '{}' (ID: {}, {} bytes) via streaming upload",
+                managedOwner.getUsername(), originalFileName, savedDocument.getId(), savedDocument.getSize());
+        return mapToDto(savedDocument);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Соединение с БД берется только на сохранение пачек
+    public BulkUploadResponse uploadDocumentArchive(InputStream archive, String category, Set<String> tags, User owner) {
+        User managedOwner = userRepository.findById(owner.getId())
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+
+        // Архив читается последовательно, а файлы из него отправляются в хранилище параллельно: не больше
+        // bulkConcurrency файлов одновременно находятся в памяти или в отправке. Как только набирается пачка,
+        // ее документы сохраняются, поэтому в очереди не больше bulkBatchSize файлов
+        ArchiveQuota quota = new ArchiveQuota(archive, bulkMaxEntries, bulkMaxEntrySize.toBytes(),
+                bulkMaxTotalSize.toBytes(), bulkMaxCompressionRatio);
+        ZipInputStream zip = new ZipInputStream(quota.archive(), StandardCharsets.UTF_8);
+        Semaphore inFlight = new Semaphore(Math.max(1, bulkConcurrency));
+        Deque<ArchiveEntry> pending = new ArrayDeque<>();
+        List<BulkUploadResultDto> results = new ArrayList<>();
+        String currentPath = null;
+        try {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                currentPath = zipEntry.getName();
+                // Каталоги и служебные файлы macOS документами не являются
+                if (!zipEntry.isDirectory() && !currentPath.startsWith("__MACOSX/")) {
+                    pending.add(storeArchiveEntry(quota.nextEntry(zip), currentPath, inFlight));
+                    quota.check();
+                    if (pending.size() >= bulkBatchSize) {
+                        saveArchiveEntries(pending, results, category, tags, managedOwner);
+                    }
+                }
+                currentPath = null;
+            }
+        } catch (ArchiveLimitExceededException e) {
+            discardArchiveEntries(pending);
+            long saved = results.stream().filter(BulkUploadResultDto::isSuccess).count();
+            log.warn("Archive uploaded by '{}' rejected after {} file(s), {} saved: {}",
+                    managedOwner.getUsername(), quota.getEntries(), saved, e.getMessage());
+            throw new ArchiveLimitExceededException(e.getMessage() + "; " + saved + " file(s) before the limit were saved");
+        } catch (IOException | IllegalArgumentException e) {
+            // Архив поврежден или соединение оборвалось: уже прочитанные файлы сохраняются, дальше читать нечего
+            log.warn("Could not read the rest of the archive uploaded by '{}': {}", managedOwner.getUsername(), e.getMessage());
+            pending.add(new ArchiveEntry(currentPath != null ? currentPath : "", null, null,
+                    CompletableFuture.failedFuture(new InvalidRequestException("Could not read the archive: " + e.getMessage(), e))));
+        } catch (RuntimeException e) {
+            discardArchiveEntries(pending);
+            throw e;
+        }
+        saveArchiveEntries(pending, results, category, tags, managedOwner);
+        if (results.isEmpty()) {
+            throw new InvalidRequestException("Request body is not a ZIP archive or contains no files");
+        }
+
+        int uploaded = (int) results.stream().filter(BulkUploadResultDto::isSuccess).count();
+        log.info("User '{}' uploaded {} of {} file(s) from an archive", managedOwner.getUsername(), uploaded, results.size());
+        return BulkUploadResponse.builder()
+                .uploaded(uploaded)
+                .failed(results.size() - uploaded)
+                .files(results)
+                .build();
+    }
+
+    /**
+     * Читает файл из архива и запускает его сохранение в хранилище. Небольшой файл читается в память
+     * и отправляется в отдельном потоке, пока читается следующий. Крупный файл приходится дочитать
+     * из архива здесь же (поток архива последовательный), но его части отправляются параллельно.
+     * @param content Содержимое файла с проверкой ограничений архива
+     */
+    private ArchiveEntry storeArchiveEntry(InputStream content, String path, Semaphore inFlight) throws IOException {
+        String fileName = StringUtils.getFilename(StringUtils.cleanPath(path));
+        String storageFileName = UUID.randomUUID() + "-" + fileName;
+        String fileType = MediaTypeFactory.getMediaType(fileName)
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        int bufferSize = (int) Math.min(bulkBufferSize.toBytes(), Integer.MAX_VALUE - 1);
+
+        inFlight.acquireUninterruptibly();
+        byte[] head;
+        try {
+            head = content.readNBytes(bufferSize + 1);
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        if (head.length <= bufferSize) {
+            CompletableFuture<UploadedContentDto> uploaded = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return storageBlobService.upload(new ByteArrayInputStream(head), head.length, fileType, storageFileName);
+                } finally {
+                    inFlight.release();
+                }
+            }, bulkUploadExecutor);
+            return new ArchiveEntry(path, fileName, fileType, uploaded);
+        }
+
+        inFlight.release();
+        try {
+            UploadedContentDto uploaded = storageBlobService.upload(
+                    new SequenceInputStream(new ByteArrayInputStream(head), content), -1, fileType, storageFileName);
+            return new ArchiveEntry(path, fileName, fileType, CompletableFuture.completedFuture(uploaded));
+        } catch (RuntimeException e) {
+            // Остаток файла все равно распаковывается, чтобы перейти к следующему; читаем его с учетом ограничений
+            content.transferTo(OutputStream.nullOutputStream());
+            return new ArchiveEntry(path, fileName, fileType, CompletableFuture.failedFuture(e));
+        }
+    }
+
+    /**
+     * Дожидается отправки файлов из очереди и сохраняет их документы одной пачкой.
+     * Результаты добавляются в порядке файлов в архиве.
+     */
+    private void saveArchiveEntries(Deque<ArchiveEntry> pending, List<BulkUploadResultDto> results,
+                                    String category, Set<String> tags, User owner) {
+        List<ArchiveDocument> batch = new ArrayList<>(pending.size());
+        ArchiveEntry entry;
+        while ((entry = pending.poll()) != null) {
+            UploadedContentDto content;
+            try {
+                content = entry.content().join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Could not store '{}' from an archive: {}", entry.path(), cause.getMessage());
+                results.add(bulkFailure(entry.path(), cause));
+                continue;
+            }
+            Document document = Document.builder()
+                    .fileName(entry.fileName())
+                    .fileType(entry.fileType())
+                    .category(category)
+                    .tags(tags != null ? new HashSet<>(tags) : new HashSet<>())
+                    .owner(owner)
+                    .build();
+            batch.add(new ArchiveDocument(results.size(), entry.path(), document, content));
+            // Место результата; заполняется после сохранения пачки
+            results.add(null);
+        }
+        if (!batch.isEmpty()) {
+            saveArchiveBatch(batch, results);
+        }
+    }
+
+    /**
+     * Архив отклонен: объекты, уже отправленные в хранилище, но не сохраненные документами, ставятся в очередь
+     * на удаление.
+     */
+    private void discardArchiveEntries(Deque<ArchiveEntry> pending) {
+        List<String> storageKeys = new ArrayList<>();
+        ArchiveEntry entry;
+        while ((entry = pending.poll()) != null) {
+            try {
+                storageKeys.add(entry.content().join().storageKey());
+            } catch (CompletionException e) {
+                // Объект не сохранился
+            }
+        }
+        if (!storageKeys.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> storageKeys.forEach(storageBlobService::scheduleDeletion));
+        }
+    }
+
+    /**
+     * Сохраняет пачку документов одной транзакцией вместе со ссылками на их объекты. Ссылки регистрируются
+     * одним запросом до первой вставки документа: нативный запрос после save сбросил бы накопленные вставки.
+     * Дальше в транзакции только вставки с ключами из последовательностей, и Hibernate отправляет документы
+     * и их задачи пачками JDBC.
+     * Если пачка не сохранилась, документы сохраняются по одному, чтобы ошибка одного файла не отменила остальные.
+     */
+    private void saveArchiveBatch(List<ArchiveDocument> batch, List<BulkUploadResultDto> results) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<StorageBlob> blobs = storageBlobService.registerAll(
+                        batch.stream().map(ArchiveDocument::content).toList());
+                for (int i = 0; i < batch.size(); i++) {
+                    Document document = batch.get(i).document();
+                    attachBlob(document, blobs.get(i));
+                    documentRepository.save(document);
+                    enqueueProcessing(document);
+                }
+            });
+            batch.forEach(item -> results.set(item.index(), bulkSuccess(item.path(), item.document())));
+            // При open-in-view контекст живет весь запрос: сохраненные документы больше не нужны в памяти
+            entityManager.clear();
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Could not save a batch of {} document(s) from an archive, saving them one by one: {}",
+                    batch.size(), e.getMessage());
+        }
+        for (ArchiveDocument item : batch) {
+            // Ключ, выданный в откаченной транзакции, не используется
+            item.document().setId(null);
+            try {
+                results.set(item.index(), bulkSuccess(item.path(), saveUploaded(item.document(), item.content())));
+            } catch (RuntimeException e) {
+                log.warn("Could not save document '{}' from an archive", item.path(), e);
+                results.set(item.index(), bulkFailure(item.path(), e));
+            }
+        }
+    }
+
+    private BulkUploadResultDto bulkSuccess(String path, Document document) {
+        return BulkUploadResultDto.builder()
+                .path(path)
+                .success(true)
+                .document(mapToDto(document))
+                .build();
+    }
+
+    private BulkUploadResultDto bulkFailure(String path, Throwable error) {
+        return BulkUploadResultDto.builder()
+                .path(path)
+                .success(false)
+                .error(error.getMessage())
+                .build();
+    }
+
+    @Override
+    public Optional<DocumentDto> uploadDocumentByHash(ContentHashUploadRequest request, User owner) {
+        User managedOwner = userRepository.findById(owner.getId())
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+
+        // Хеш и размер не доказывают, что файл есть у клиента, поэтому ссылаться можно только на содержимое,
+        // которое уже есть среди его документов. Остальные файлы загружаются обычным способом и
+        // дедуплицируются после передачи байт
+        Optional<StorageBlob> existing = storageBlobService.acquire(request.getSha256(), request.getSize(), managedOwner.getId());
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        StorageBlob blob = existing.get();
+
+        Document document = Document.builder()
+                .fileName(StringUtils.cleanPath(request.getFileName()))
+                .storageFileName(blob.getStorageKey())
+                .fileType(StringUtils.hasText(request.getContentType())
+                        ? request.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .size(blob.getSize())
+                .category(request.getCategory())
+                .tags(request.getTags() != null ? new HashSet<>(request.getTags()) : new HashSet<>())
+                .owner(managedOwner)
+                .blob(blob)
+                .etag(blob.getSha256())
+                .build();
+
+        Document savedDocument = documentRepository.save(document);
+        enqueueProcessing(savedDocument);
+        log.info("User '{}' uploaded document '{}' (ID: {}) by content hash, no bytes transferred",
+                managedOwner.getUsername(), savedDocument.getFileName(), savedDocument.getId());
+        return Optional.of(mapToDto(savedDocument));
+    }
+
+    /**
+     * Сохраняет документ вместе со ссылкой на загруженный объект в одной транзакции. Если она откатилась,
+     * загруженный объект никому не нужен и ставится в очередь на удаление.
+     */
+    private Document saveUploaded(Document document, UploadedContentDto content) {
+        try {
+            // Загрузка идет без транзакции: документ, ссылка на объект и задачи сохраняются в отдельной
+            return transactionTemplate.execute(status -> {
+                attachBlob(document, storageBlobService.register(content));
+                Document savedDocument = documentRepository.save(document);
+                enqueueProcessing(savedDocument);
+                return savedDocument;
+            });
+        } catch (RuntimeException e) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> storageBlobService.scheduleDeletion(content.storageKey()));
+            } catch (RuntimeException cleanupException) {
+                e.addSuppressed(cleanupException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Связывает документ с объектом; при дедупликации ключ может отличаться от того, под которым файл загружен.
+     */
+    private static void attachBlob(Document document, StorageBlob blob) {
+        document.setBlob(blob);
+        document.setStorageFileName(blob.getStorageKey());
+        document.setSize(blob.getSize());
+        document.setEtag(blob.getSha256());
+    }
+
+    /**
+     * Ставит фоновую обработку нового документа в очередь в той же транзакции, что и его запись:
+     * индексацию содержимого и, если хеш объекта неизвестен, его хеширование.
+     */
+    private void enqueueProcessing(Document document) {
+        StorageBlob blob = document.getBlob();
+        if (blob.getSha256() == null) {
+            backgroundJobService.enqueue(JobType.HASH_BLOB, blob.getId());
+        }
+        backgroundJobService.enqueue(JobType.INDEX_CONTENT, document.getId());
+    }
+
+    @Override
+    public DirectUploadResponse initiateDirectUpload(DirectUploadRequest request, User owner) {
+        User managedOwner = userRepository.findById(owner.getId())
+                .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
+
+        String originalFileName = StringUtils.cleanPath(request.getFileName());
+        String storageFileName = UUID.randomUUID() + "-" + originalFileName;
+        String fileType = StringUtils.hasText(request.getContentType())
+                ? request.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        // Ссылки подписываются локально; для крупного файла в хранилище создается multipart-загрузка
+        PresignedUploadDto presigned = fileStorageService.createPresignedUpload(
+                storageFileName, fileType, request.getSize(), directUploadExpiry);
+
+        Document document = Document.builder()
+                .fileName(originalFileName)
+                .storageFileName(storageFileName)
+                .fileType(fileType)
+                .size(request.getSize())
+                .category(request.getCategory())
+                .tags(request.getTags() != null ? new HashSet<>(request.getTags()) : new HashSet<>())
+                .owner(managedOwner)
+                .status(DocumentStatus.PENDING)
+                .uploadId(presigned.uploadId())
+                .build();
+
+        Document savedDocument;
+        try {
+            savedDocument = documentRepository.save(document);
+        } catch (RuntimeException e) {
+            if (presigned.uploadId() != null) {
+                try {
+                    fileStorageService.abortMultipartUpload(storageFileName, presigned.uploadId());
+                } catch (RuntimeException abortException) {
+                    e.addSuppressed(abortException);
+                }
+            }
+            throw e;
+        }
+        log.info("User '{}' initiated direct upload of '{}' (ID: {}, {} bytes, {} URL(s))",
+                managedOwner.getUsername(), originalFileName, savedDocument.getId(), request.getSize(),
+                presigned.uploadUrls().size());
+
+        return DirectUploadResponse.builder()
+                .documentId(savedDocument.getId())
+                .uploadId(presigned.uploadId())
+                .partSize(presigned.partSize())
+                .uploadUrls(presigned.uploadUrls())
+                .expiresAt(presigned.expiresAt())
+                .build();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Запросы к хранилищу идут без блокировки строки
+    public DocumentDto commitDirectUpload(Long id, String etag, User owner) {
+        Document document = documentRepository.findByIdAndStatus(id, DocumentStatus.PENDING)
+                .orElseGet(() -> documentRepository.findByIdAndStatus(id, DocumentStatus.ACTIVE)
+                        .orElseThrow(() -> new EntityNotFoundException("Pending upload not found with id: " + id)));
+
+        if (!document.getOwner().getId().equals(owner.getId())) {
+            throw new AccessDeniedException("You do not have permission to commit this upload.");
+        }
+        if (document.getStatus() == DocumentStatus.ACTIVE) {
+            // Повтор подтверждения (например, ответ на первый запрос не дошел до клиента)
+            return mapToDto(document);
+        }
+
+        if (document.getUploadId() != null) {
+            completeDirectUpload(document);
+        }
+
+        StoredObjectDto storedObject = fileStorageService.statFile(document.getStorageFileName())
+                .orElseThrow(() -> new InvalidRequestException("File has not been uploaded to the storage yet"));
+        if (storedObject.size() != document.getSize()) {
+            throw new InvalidRequestException("Uploaded file size " + storedObject.size()
+                                               + " does not match the declared size " + document.getSize());
+        }
+        if (StringUtils.hasText(etag) && !normalizeEtag(etag).equals(storedObject.etag())) {
+            throw new InvalidRequestException("Uploaded file ETag does not match");
+        }
+
+        return transactionTemplate.execute(status -> {
+            // Блокировка строки не дает фоновой очистке удалить документ, пока он становится доступным
+            Document pending = documentRepository.findByIdAndStatusForUpdate(id, DocumentStatus.PENDING).orElse(null);
+            if (pending == null) {
+                // Параллельный commit успел раньше, или загрузку удалила очистка (тогда и объект уже в очереди на удаление)
+                return documentRepository.findByIdAndStatus(id, DocumentStatus.ACTIVE)
+                        .map(this::mapToDto)
+                        .orElseThrow(() -> new EntityNotFoundException("Pending upload not found with id: " + id));
+            }
+
+            // Хеш прямой загрузки неизвестен (файл не проходил через приложение), дедупликации здесь нет
+            pending.setBlob(storageBlobService.registerUnhashed(pending.getStorageFileName(), storedObject.size()));
+            pending.setEtag(storedObject.etag());
+            pending.setStatus(DocumentStatus.ACTIVE);
+            pending.setUploadId(null);
+            Document savedDocument = documentRepository.save(pending);
+            enqueueProcessing(savedDocument);
+            log.info("User '{}' committed direct upload of '{}' (ID: {})",
+                    owner.getUsername(), savedDocument.getFileName(), savedDocument.getId());
+            return mapToDto(savedDocument);
+        });
+    }
+
+    /**
+     * Собирает объект из загруженных клиентом частей. Если проверка после сборки не пройдет,
+     * объект удалит фоновая очистка вместе с документом.
+     */
+    private void completeDirectUpload(Document document) {
+        try {
+            fileStorageService.completeMultipartUpload(document.getStorageFileName(), document.getUploadId());
+        } catch (RuntimeException e) {
+            // Загрузку уже собрал предыдущий commit, упавший до записи в БД, или параллельный:
+            // хранилище отвечает NoSuchUpload, но объект на месте. До сборки объекта под этим ключом нет
+            if (fileStorageService.statFile(document.getStorageFileName()).isEmpty()) {
+                throw e;
+            }
+            log.info("Multipart upload of '{}' (ID: {}) was already completed", document.getStorageFileName(), document.getId());
+        }
+    }
+
+    private String normalizeEtag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        return value.replace("\"", "");
+    }
+
+    @Override
+    public boolean removeExpiredUpload(Long id, LocalDateTime createdBefore) {
+        Document document = documentRepository.findByIdAndStatusForUpdate(id, DocumentStatus.PENDING)
+                .filter(pending -> pending.getUploadDate().isBefore(createdBefore))
+                .orElse(null);
+        if (document == null) {
+            // Уже подтвержден или удален другим узлом
+            return false;
+        }
+
+        documentRepository.delete(document);
+        // Клиент мог успеть загрузить файл одним PUT, но не вызвать commit; multipart-загрузка отменяется в фоне
+        storageBlobService.scheduleDeletion(document.getStorageFileName(), document.getUploadId());
+        log.info("Expired direct upload '{}' (ID: {}) removed", document.getFileName(), id);
+        return true;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                 String fileName, Pageable pageable) {
+        return documentRepository.findDocumentDtos(userDocumentsSpec(owner, category, tags, tagMatch, fileName), pageable);
+    }
+
     @Override
     @Transactional(readOnly = true)
-    public Page<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, String fileName, Pageable pageable) {
-        Specification<Document> spec = DocumentSpecification.byOwnerId(owner.getId());
+    public CursorPage<DocumentDto> getAllUserDocuments(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                       String fileName, String cursor, int size) {
+        return findDocumentPage(userDocumentsSpec(owner, category, tags, tagMatch, fileName), cursor, size);
+    }
+
+    private Specification<Document> userDocumentsSpec(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                      String fileName) {
+        Specification<Document> spec = DocumentSpecification.byOwnerId(owner.getId())
+                .and(DocumentSpecification.isActive());
 
         if (StringUtils.hasText(category)) {
             spec = spec.and(DocumentSpecification.byCategory(category));
         }
         if (tags != null && !tags.isEmpty()) {
-            spec = spec.and(DocumentSpecification.byTags(tags));
+            spec = spec.and(DocumentSpecification.byTags(tags, tagMatch));
         }
         if (fileName != null && !fileName.isBlank()) {
-            spec = spec.and(DocumentSpecification.byFileName(fileName));
+            spec = spec.and(byQuery(fileName));
+        }
+        return spec;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<DocumentDto> searchDocuments(User user, String query, Pageable pageable) {
+        Specification<Document> fullText = DocumentSpecification.byFullText(query);
+        if (fullText == null) {
+            throw new InvalidRequestException("Search query must contain at least one word");
         }
+        Specification<Document> spec = DocumentSpecification.byOwnerId(user.getId())
+                .or(DocumentSpecification.sharedWith(user.getId()))
+                .and(DocumentSpecification.isActive())
+                .and(fullText);
+        // Без явной сортировки страница упорядочена по релевантности
+        return documentRepository.findDocumentDtos(spec, pageable);
+    }
 
-        return documentRepository.findAll(spec, pageable).map(this::mapToDto);
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentFacets getUserDocumentFacets(User owner, String category, Set<String> tags, TagMatchMode tagMatch,
+                                                String query) {
+        return findFacets(owner.getId(), category, tags, tagMatch, query, null,
+                (c, t) -> userDocumentsSpec(owner, c, t, tagMatch, query));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentFacets getDocumentFacetsForAdmin(String category, Set<String> tags, TagMatchMode tagMatch,
+                                                    String query, String username) {
+        return findFacets(null, category, tags, tagMatch, query, username,
+                (c, t) -> adminDocumentsSpec(c, t, tagMatch, query, username));
+    }
+
+    /**
+     * Счетчики из кэша или из БД.
+     * @param specOf Фильтр списка по категории и тегам (остальные условия уже подставлены)
+     */
+    private DocumentFacets findFacets(Long ownerId, String category, Set<String> tags, TagMatchMode tagMatch,
+                                      String query, String username,
+                                      BiFunction<String, Set<String>, Specification<Document>> specOf) {
+        String categoryKey = StringUtils.hasText(category) ? category : null;
+        Set<String> tagsKey = tags != null ? Set.copyOf(tags) : Set.of();
+        TagMatchMode tagMatchKey = tagMatch != null ? tagMatch : TagMatchMode.ANY;
+        String queryKey = StringUtils.hasText(query) ? query.trim() : null;
+        String usernameKey = StringUtils.hasText(username) ? username : null;
+
+        List<FacetCount> categories = facetCounts.get(
+                new FacetKey(Facet.CATEGORY, ownerId, null, tagsKey, tagMatchKey, queryKey, usernameKey),
+                key -> documentRepository.countByCategory(specOf.apply(null, tags), facetsLimit));
+        List<FacetCount> tagCounts = facetCounts.get(
+                new FacetKey(Facet.TAG, ownerId, categoryKey, Set.of(), null, queryKey, usernameKey),
+                key -> documentRepository.countByTag(specOf.apply(category, null), facetsLimit));
+        return new DocumentFacets(categories, tagCounts);
+    }
+
+    /**
+     * Условие поиска по строке запроса: полнотекстовый поиск, а если он выключен или в запросе
+     * нет ни одного слова (только знаки) - прежний поиск подстроки в имени файла.
+     */
+    private Specification<Document> byQuery(String query) {
+        Specification<Document> fullText = searchMode == SearchMode.FULL_TEXT
+                ? DocumentSpecification.byFullText(query)
+                : null;
+        return fullText != null ? fullText : DocumentSpecification.byFileName(query);
+    }
+
+    /**
+     * Страница документов по курсору в порядке (uploadDate DESC, id DESC).
+     */
+    private CursorPage<DocumentDto> findDocumentPage(Specification<Document> spec, String cursor, int size) {
+        int limit = cursorPageSize(size);
+        // Берем на одну строку больше, чтобы узнать, есть ли следующая страница, без count
+        List<DocumentDto> rows = documentRepository.findDocumentDtos(spec, PageCursor.decode(cursor), limit + 1);
+        return toCursorPage(rows, limit, dto -> new PageCursor(dto.getUploadDate(), dto.getId()));
+    }
+
+    private static int cursorPageSize(int size) {
+        if (size < 1) {
+            throw new InvalidRequestException("Page size must be positive");
+        }
+        return Math.min(size, MAX_CURSOR_PAGE_SIZE);
+    }
+
+    private static <T> CursorPage<T> toCursorPage(List<T> rows, int limit, Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> content = List.copyOf(rows.subList(0, limit));
+        return new CursorPage<>(content, cursorOf.apply(content.get(limit - 1)).encode());
     }
 
     @Override
     @Transactional(readOnly = true)
     public FileDownloadDto downloadDocument(Long id, User user) {
-        Document document = documentRepository.findById(id)
+        return downloadDocument(id, user, null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FileDownloadDto downloadDocument(Long id, User user, DownloadMode mode) {
+        Document document = documentRepository.findByIdAndStatus(id, DocumentStatus.ACTIVE)
                 .orElseThrow(() -> new EntityNotFoundException("Документ с id " + id + " не найден."));
 
         // Проверка прав доступа
@@ -244,15 +1034,35 @@ public class DocumentServiceImpl implements DocumentService {
             throw new AccessDeniedException("У вас нет прав для доступа к этому документу.");
         }
 
-        // Получаем файл из хранилища
-        InputStream fileStream = fileStorageService.downloadFile(document.getStorageFileName());
-        Resource resource = new InputStreamResource(fileStream);
+        // Ресурс не открывает объект сразу: поток (целиком или диапазоном) запрашивается при формировании ответа
+        Resource resource = new StorageObjectResource(fileStorageService, document.getStorageFileName(), document.getSize());
 
         // Определяем MediaType
         MediaType mediaType = MediaType.parseMediaType(document.getFileType());
 
+        // Для редиректа подписываем ссылку с теми же заголовками, что отдало бы приложение
+        URI redirectUrl = null;
+        if (resolveDownloadMode(mode, document.getSize()) == DownloadMode.REDIRECT) {
+            String contentDisposition = ContentDisposition.attachment()
+                    .filename(document.getFileName(), StandardCharsets.UTF_8)
+                    .build()
+                    .toString();
+            redirectUrl = URI.create(fileStorageService.getPresignedDownloadUrl(
+                    document.getStorageFileName(), contentDisposition, mediaType.toString(), presignedDownloadExpiry));
+        }
+
         // Возвращаем новый, типизированный DTO
-        return new FileDownloadDto(document.getFileName(), resource, mediaType);
+        Instant lastModified = document.getUploadDate().atZone(ZoneId.systemDefault()).toInstant();
+        return new FileDownloadDto(document.getFileName(), resource, mediaType, document.getSize(), lastModified,
+                document.getEtag(), redirectUrl);
+    }
+
+    private DownloadMode resolveDownloadMode(DownloadMode requested, long size) {
+        DownloadMode mode = requested != null ? requested : defaultDownloadMode;
+        if (mode == DownloadMode.AUTO) {
+            return size >= redirectThreshold.toBytes() ? DownloadMode.REDIRECT : DownloadMode.PROXY;
+        }
+        return mode;
     }
 
     @Override
@@ -274,11 +1084,20 @@ public class DocumentServiceImpl implements DocumentService {
             // 1. Удаляем все связи вручную
             documentShareRepository.deleteAllByDocumentId(id);
 
-            // 2. Пытаемся удалить файл из хранилища.
-            fileStorageService.deleteFile(document.getStorageFileName());
-
-            // 3. Гарантированно удаляем запись из базы данных.
+            // 2. Удаляем запись из базы данных.
+            StorageBlob blob = document.getBlob();
             documentRepository.delete(document);
+            documentRepository.flush();
+
+            // 3. Файл удаляется из хранилища, только если на него больше не ссылается ни один документ.
+            // Удаление записывается в outbox в этой же транзакции, сам объект удаляется в фоне
+            if (blob != null) {
+                storageBlobService.release(blob);
+            } else {
+                // Незавершенная прямая загрузка: объект (или его части) принадлежит только этому документу.
+                // Multipart-загрузка тоже отменяется в фоне, транзакция не ждет MinIO
+                storageBlobService.scheduleDeletion(document.getStorageFileName(), document.getUploadId());
+            }
 
             log.info("User '{}' successfully deleted document '{}' (ID: {}) and its database record.",
                     currentUser.getUsername(), document.getFileName(), id);
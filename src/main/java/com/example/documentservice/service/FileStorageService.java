@@ -1,8 +1,18 @@
 package com.example.documentservice.service;
 
+import com.example.documentservice.dto.PresignedUploadDto;
+import com.example.documentservice.dto.StoredObjectContentDto;
+import com.example.documentservice.dto.StoredObjectDto;
+import com.example.documentservice.dto.StoredObjectSummaryDto;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface FileStorageService {
 
@@ -13,6 +23,17 @@ public interface FileStorageService {
      */
     void uploadFile(MultipartFile file, String storageFileName);
 
+    /**
+     * Загружает файл в хранилище напрямую из потока, без промежуточной буферизации на диск.
+     * Если размер неизвестен, поток отправляется частями фиксированного размера (multipart upload),
+     * поэтому в памяти одновременно держится не больше одной части.
+     * @param inputStream Поток с содержимым файла.
+     * @param size Размер в байтах или -1, если он заранее неизвестен.
+     * @param contentType MIME-тип файла.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     */
+    void uploadStream(InputStream inputStream, long size, String contentType, String storageFileName);
+
     /**
      * Скачивает файл из хранилища.
      * @param storageFileName Уникальное имя файла в хранилище.
@@ -20,12 +41,97 @@ public interface FileStorageService {
      */
     InputStream downloadFile(String storageFileName);
 
+    /**
+     * Скачивает файл вместе с его метаданными (размер, ETag) из заголовков того же ответа,
+     * без отдельного запроса метаданных.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @return Поток с содержимым файла и метаданные объекта.
+     */
+    StoredObjectContentDto downloadFileWithMetadata(String storageFileName);
+
+    /**
+     * Скачивает диапазон байт файла из хранилища.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @param offset Смещение первого байта.
+     * @param length Количество байт.
+     * @return InputStream с запрошенным диапазоном.
+     */
+    InputStream downloadFile(String storageFileName, long offset, long length);
+
+    /**
+     * Возвращает путь к проверенной локальной копии объекта, если реализация ее хранит (дисковый кэш).
+     * Такой файл можно отдать клиенту средствами ОС (sendfile), не копируя байты через JVM.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @return Путь к локальной копии или пустой Optional.
+     */
+    default Optional<Path> getLocalCopy(String storageFileName) {
+        return Optional.empty();
+    }
+
+    /**
+     * Создает короткоживущую подписанную ссылку на скачивание файла напрямую из хранилища.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @param contentDisposition Значение Content-Disposition, которое хранилище вернет в ответе.
+     * @param contentType MIME-тип, который хранилище вернет в ответе.
+     * @param expiry Время жизни ссылки.
+     * @return Подписанная ссылка.
+     */
+    String getPresignedDownloadUrl(String storageFileName, String contentDisposition, String contentType, Duration expiry);
+
+    /**
+     * Готовит загрузку файла клиентом напрямую в хранилище. Небольшой файл загружается одним PUT,
+     * крупный - multipart-загрузкой с отдельной подписанной ссылкой на каждую часть.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @param contentType MIME-тип файла.
+     * @param size Размер файла в байтах.
+     * @param expiry Время жизни ссылок.
+     * @return ID multipart-загрузки (если есть), размер части и ссылки для загрузки.
+     */
+    PresignedUploadDto createPresignedUpload(String storageFileName, String contentType, long size, Duration expiry);
+
+    /**
+     * Собирает объект из частей, загруженных клиентом по подписанным ссылкам.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @param uploadId ID multipart-загрузки.
+     */
+    void completeMultipartUpload(String storageFileName, String uploadId);
+
+    /**
+     * Отменяет незавершенную multipart-загрузку и удаляет уже загруженные части.
+     * Загрузка, которой уже нет (собрана или отменена), ошибкой не считается.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @param uploadId ID multipart-загрузки.
+     * @throws RuntimeException если хранилище не ответило или отказало; отмену можно повторить
+     */
+    void abortMultipartUpload(String storageFileName, String uploadId);
+
+    /**
+     * Возвращает метаданные объекта, не скачивая его.
+     * @param storageFileName Уникальное имя файла в хранилище.
+     * @return Метаданные или пустой Optional, если объекта нет.
+     */
+    Optional<StoredObjectDto> statFile(String storageFileName);
+
+    /**
+     * Перечисляет все объекты хранилища в порядке возрастания имен (побайтово в UTF-8, как их отдает S3).
+     * Листинг читается постранично по мере обхода потока, поэтому память не зависит от числа объектов.
+     * @return Поток объектов; ошибка хранилища при чтении очередной страницы выбрасывается из потока.
+     */
+    Stream<StoredObjectSummaryDto> listFiles();
+
     /**
      * Удаляет файл из хранилища.
      * @param storageFileName Уникальное имя файла в хранилище.
      */
     void deleteFile(String storageFileName) throws Exception;
 
+    /**
+     * Удаляет несколько файлов одним запросом к хранилищу. Отсутствующие файлы считаются удаленными.
+     * @param storageFileNames Уникальные имена файлов в хранилище (не больше 1000 за вызов).
+     * @return Имена файлов, которые удалить не удалось.
+     */
+    List<String> deleteFiles(Collection<String> storageFileNames);
+
     /**
      * Копирует файл внутри хранилища.
      * @param sourceObjectName Имя исходного файла
@@ -0,0 +1,16 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.JobType;
+
+/**
+ * Обработчик фоновых задач одного типа.
+ * <p>
+ * Задача может выполниться повторно (после ошибки или если истекла аренда), поэтому обработка должна быть
+ * идемпотентной. Исключение означает временную ошибку: задача будет повторена с задержкой.
+ */
+public interface JobHandler {
+
+    JobType type();
+
+    void handle(Long targetId) throws Exception;
+}
@@ -8,7 +8,22 @@ import io.jsonwebtoken.Claims;
 public interface JwtService {
     String extractUserName(String token);
     <T> T extractClaim(String token, Function<Claims, T> claimsResolver);
+
+    /**
+     * Разбирает токен и проверяет подпись и срок действия.
+     * Результат проверки кэшируется до истечения токена, повторные запросы с тем же токеном подпись не проверяют.
+     * @param token JWT без префикса "Bearer "
+     * @return Проверенные claims токена
+     * @throws io.jsonwebtoken.JwtException если токен поврежден, подделан или истек
+     */
+    Claims extractAllClaims(String token);
+
     String generateToken(UserDetails userDetails);
     String generateToken(Map<String, Object> extraClaims, UserDetails userDetails);
     boolean isTokenValid(String token, UserDetails userDetails);
+
+    /**
+     * Проверяет уже разобранный токен, не разбирая его повторно.
+     */
+    boolean isTokenValid(Claims claims, UserDetails userDetails);
 }
@@ -1,29 +1,84 @@
 package com.example.documentservice.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
+@RequiredArgsConstructor
 public class JwtServiceImpl implements JwtService {
+
+    private final MeterRegistry meterRegistry;
+
     @Value("${jwt.secret}")
     private String jwtSigningKey;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Сколько проверенных токенов держать в кэше
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    // Ключ и парсер не зависят от токена, поэтому создаются один раз
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    // Ключ кэша - SHA-256 токена: сами токены в памяти не храним, а поиск по хешу дешевле проверки подписи
+    private Cache<String, Claims> verifiedClaims;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = createSigningKey();
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        // Запись живет ровно до exp токена: после этого токен снова разбирается и отклоняется как истекший
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return nanosUntilExpiration(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return nanosUntilExpiration(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
+    }
+
     @Override
     public String extractUserName(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -36,8 +91,13 @@ public class JwtServiceImpl implements JwtService {
 
     @Override
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(extractAllClaims(token), userDetails);
+    }
+
+    @Override
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String userName = claims.getSubject();
+        return (userName != null && userName.equals(userDetails.getUsername())) && !isTokenExpired(claims);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
@@ -51,27 +111,49 @@ public class JwtServiceImpl implements JwtService {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.before(new Date());
+    }
+
+    @Override
+    public Claims extractAllClaims(String token) {
+        String key = digest(token);
+        Claims cached = verifiedClaims.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Ошибки разбора (подпись, формат, срок) не кэшируются и пробрасываются как раньше
+        Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+        verifiedClaims.put(key, claims);
+        return claims;
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static long nanosUntilExpiration(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            // Токен без exp не кэшируем надолго
+            return TimeUnit.MINUTES.toNanos(1);
+        }
+        long millis = expiration.getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith((SecretKey) getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Key getSigningKey() {
+    private SecretKey createSigningKey() {
         try {
             // пробуем как Base64
             byte[] keyBytes = Decoders.BASE64.decode(jwtSigningKey);
@@ -82,13 +164,3 @@ public class JwtServiceImpl implements JwtService {
         }
     }
 }
-
-
-
-
-
-
-
-
-
-
@@ -1,20 +1,50 @@
 package com.example.documentservice.service;
 
+import com.example.documentservice.dto.PresignedUploadDto;
+import com.example.documentservice.dto.StoredObjectContentDto;
+import com.example.documentservice.dto.StoredObjectDto;
+import com.example.documentservice.dto.StoredObjectSummaryDto;
+import com.example.documentservice.exception.InvalidRequestException;
 import io.minio.CopyObjectArgs;
 import io.minio.CopySource;
 import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.http.Method;
+import okhttp3.Headers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 @Service
@@ -22,12 +52,30 @@ import java.util.UUID;
 public class MinioFileStorageService implements FileStorageService {
 
     private final MinioClient minioClient;
+    @Qualifier("presignMinioClient")
+    private final MinioClient presignMinioClient;
+    private final ParallelMultipartUploader parallelUploader;
 
     @Value("${minio.bucket.name}")
     private String bucketName;
 
+    // Файлы от этого размера и потоки неизвестной длины загружаются через ParallelMultipartUploader
+    // (поток, который уместился в одну часть, он отправляет одним запросом)
+    @Value("${minio.upload.parallel.threshold:64MB}")
+    private DataSize parallelThreshold;
+
     @Override
     public void uploadFile(MultipartFile file, String storageFileName) {
+        if (file.getSize() >= parallelThreshold.toBytes()) {
+            try (InputStream inputStream = file.getInputStream()) {
+                parallelUploader.upload(inputStream, file.getSize(), file.getContentType(), storageFileName);
+                log.info("File '{}' uploaded successfully to MinIO as '{}'", file.getOriginalFilename(), storageFileName);
+                return;
+            } catch (IOException e) {
+                log.error("Error uploading file to MinIO", e);
+                throw new RuntimeException("Error uploading file to MinIO", e);
+            }
+        }
         try {
             minioClient.putObject(
                     PutObjectArgs.builder()
@@ -44,6 +92,29 @@ public class MinioFileStorageService implements FileStorageService {
         }
     }
 
+    @Override
+    public void uploadStream(InputStream inputStream, long size, String contentType, String storageFileName) {
+        if (size < 0 || size >= parallelThreshold.toBytes()) {
+            parallelUploader.upload(inputStream, size, contentType, storageFileName);
+            return;
+        }
+        try {
+            // Небольшой файл известного размера: SDK сам подбирает размер части
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(storageFileName)
+                            .stream(inputStream, size, -1)
+                            .contentType(contentType)
+                            .build()
+            );
+            log.info("Stream uploaded successfully to MinIO as '{}'", storageFileName);
+        } catch (Exception e) {
+            log.error("Error uploading stream to MinIO", e);
+            throw new RuntimeException("Error uploading stream to MinIO", e);
+        }
+    }
+
     @Override
     public InputStream downloadFile(String storageFileName) {
 
@@ -60,6 +131,170 @@ public class MinioFileStorageService implements FileStorageService {
         }
     }
 
+    @Override
+    public StoredObjectContentDto downloadFileWithMetadata(String storageFileName) {
+        try {
+            GetObjectResponse response = minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(storageFileName)
+                            .build()
+            );
+            // Ответ на GET без диапазона несет те же размер и ETag, что и statObject
+            Headers headers = response.headers();
+            String contentLength = headers.get("Content-Length");
+            String etag = headers.get("ETag");
+            StoredObjectDto metadata = new StoredObjectDto(
+                    contentLength != null ? Long.parseLong(contentLength) : -1,
+                    etag != null ? etag.replace("\"", "") : null,
+                    headers.get("Content-Type"));
+            return new StoredObjectContentDto(metadata, response);
+        } catch (Exception e) {
+            log.error("Error downloading file from MinIO", e);
+            throw new RuntimeException("Error downloading file from MinIO", e);
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String storageFileName, long offset, long length) {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(storageFileName)
+                            .offset(offset)
+                            .length(length)
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Error downloading range of file from MinIO", e);
+            throw new RuntimeException("Error downloading range of file from MinIO", e);
+        }
+    }
+
+    @Override
+    public String getPresignedDownloadUrl(String storageFileName, String contentDisposition, String contentType, Duration expiry) {
+        try {
+            // response-* параметры заставляют MinIO отдать файл с нужными заголовками
+            return presignMinioClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.GET)
+                            .bucket(bucketName)
+                            .object(storageFileName)
+                            .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                            .extraQueryParams(Map.of(
+                                    "response-content-disposition", contentDisposition,
+                                    "response-content-type", contentType))
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Error creating presigned download URL for '{}'", storageFileName, e);
+            throw new RuntimeException("Error creating presigned download URL", e);
+        }
+    }
+
+    @Override
+    public PresignedUploadDto createPresignedUpload(String storageFileName, String contentType, long size, Duration expiry) {
+        Instant expiresAt = Instant.now().plus(expiry);
+        try {
+            if (size < parallelThreshold.toBytes()) {
+                String url = presignUpload(storageFileName, expiry, Map.of());
+                return new PresignedUploadDto(null, size, List.of(url), expiresAt);
+            }
+
+            // Крупный файл: клиент отправляет части параллельно, каждую по своей ссылке
+            long uploadPartSize = parallelUploader.partSizeFor(1, size);
+            int partCount = (int) ((size + uploadPartSize - 1) / uploadPartSize);
+            if (partCount > ParallelMultipartUploader.MAX_PARTS) {
+                throw new InvalidRequestException("File is too large for a direct upload: " + size + " bytes");
+            }
+            String uploadId = parallelUploader.createUpload(storageFileName, contentType);
+            try {
+                List<String> urls = new ArrayList<>(partCount);
+                for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                    urls.add(presignUpload(storageFileName, expiry,
+                            Map.of("uploadId", uploadId, "partNumber", String.valueOf(partNumber))));
+                }
+                log.info("Presigned multipart upload {} of '{}' created: {} parts of {} bytes",
+                        uploadId, storageFileName, partCount, uploadPartSize);
+                return new PresignedUploadDto(uploadId, uploadPartSize, urls, expiresAt);
+            } catch (Exception e) {
+                parallelUploader.abortOrThrow(storageFileName, uploadId);
+                throw e;
+            }
+        } catch (InvalidRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error creating presigned upload for '{}'", storageFileName, e);
+            throw new RuntimeException("Error creating presigned upload", e);
+        }
+    }
+
+    private String presignUpload(String storageFileName, Duration expiry, Map<String, String> queryParams) throws Exception {
+        return presignMinioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.PUT)
+                        .bucket(bucketName)
+                        .object(storageFileName)
+                        .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                        .extraQueryParams(queryParams)
+                        .build()
+        );
+    }
+
+    @Override
+    public void completeMultipartUpload(String storageFileName, String uploadId) {
+        parallelUploader.completeUploadedParts(storageFileName, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String storageFileName, String uploadId) {
+        parallelUploader.abort(storageFileName, uploadId);
+    }
+
+    @Override
+    public Optional<StoredObjectDto> statFile(String storageFileName) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(storageFileName)
+                            .build()
+            );
+            String etag = stat.etag() != null ? stat.etag().replace("\"", "") : null;
+            return Optional.of(new StoredObjectDto(stat.size(), etag, stat.contentType()));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            log.error("Error reading metadata of '{}' from MinIO", storageFileName, e);
+            throw new RuntimeException("Error reading file metadata from MinIO", e);
+        } catch (Exception e) {
+            log.error("Error reading metadata of '{}' from MinIO", storageFileName, e);
+            throw new RuntimeException("Error reading file metadata from MinIO", e);
+        }
+    }
+
+    @Override
+    public Stream<StoredObjectSummaryDto> listFiles() {
+        // Итератор MinIO запрашивает следующую страницу листинга (до 1000 объектов) только по мере обхода
+        Iterable<Result<Item>> results = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .recursive(true)
+                        .build()
+        );
+        return StreamSupport.stream(results.spliterator(), false).map(result -> {
+            try {
+                Item item = result.get();
+                return new StoredObjectSummaryDto(item.objectName(), item.size(), item.lastModified().toInstant());
+            } catch (Exception e) {
+                log.error("Error listing files in MinIO", e);
+                throw new RuntimeException("Error listing files in MinIO", e);
+            }
+        });
+    }
+
     @Override
     public void deleteFile(String storageFileName) throws Exception {
         try {
@@ -89,6 +324,35 @@ public class MinioFileStorageService implements FileStorageService {
         }
     }
 
+    @Override
+    public List<String> deleteFiles(Collection<String> storageFileNames) {
+        if (storageFileNames.isEmpty()) {
+            return List.of();
+        }
+        List<DeleteObject> objects = storageFileNames.stream().map(DeleteObject::new).toList();
+        Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                RemoveObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .objects(objects)
+                        .build());
+        // Запрос выполняется лениво, при обходе результата; в нем только ошибки (отсутствие объекта ошибкой не считается)
+        List<String> failed = new ArrayList<>();
+        for (Result<DeleteError> result : results) {
+            try {
+                DeleteError error = result.get();
+                if (!"NoSuchKey".equals(error.code())) {
+                    log.warn("Could not delete '{}' from MinIO: {} {}", error.objectName(), error.code(), error.message());
+                    failed.add(error.objectName());
+                }
+            } catch (Exception e) {
+                // Весь запрос не выполнен (например, MinIO недоступен)
+                throw new RuntimeException("Error deleting files from MinIO", e);
+            }
+        }
+        log.info("Deleted {} file(s) from MinIO, {} failed", storageFileNames.size() - failed.size(), failed.size());
+        return failed;
+    }
+
     @Override
     public String copyFile(String sourceObjectName) throws Exception {
         String newObjectName = UUID.randomUUID() + "-" + sourceObjectName.substring(sourceObjectName.indexOf("-") + 1);
@@ -0,0 +1,537 @@
+package com.example.documentservice.service;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.UploadPartResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Загружает большие объекты в MinIO параллельными частями.
+ * <p>
+ * Поток читается последовательно, каждая часть отправляется отдельной задачей в ограниченный пул потоков.
+ * Одновременно в памяти находится не больше {@code concurrency} буферов на одну загрузку, поэтому
+ * потребление памяти равно {@code concurrency * partSize}. Буферы всех загрузок вместе ограничены
+ * {@code minio.upload.parallel.max-buffer-memory}: когда бюджет исчерпан, загрузка обходится уже
+ * выделенными буферами (в худшем случае одним) и отправляет части медленнее, но память не растет
+ * с числом одновременных загрузок. Упавшая часть повторяется с экспоненциальной
+ * задержкой; если повторы не помогли, multipart-загрузка отменяется, чтобы в bucket не остались
+ * "висящие" части.
+ * <p>
+ * При {@code spring.threads.virtual.enabled=true} части отправляются в виртуальных потоках,
+ * а {@code minio.upload.parallel.threads} не используется.
+ */
+@Slf4j
+@Component
+public class ParallelMultipartUploader {
+
+    // Ограничения S3: не больше 10000 частей, все части кроме последней - не меньше 5 MiB
+    static final int MAX_PARTS = 10_000;
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    // Часть целиком лежит в byte[], поэтому ограничиваем ее размер 1 GiB
+    static final long MAX_PART_SIZE = 1024L * 1024 * 1024;
+    // Для потоков неизвестной длины размер части удваивается каждые PARTS_PER_STEP частей
+    private static final int PARTS_PER_STEP = 2_000;
+    private static final long RETRY_BASE_DELAY_MS = 200;
+
+    private final MinioAsyncClient minioAsyncClient;
+    private final String bucketName;
+    private final long basePartSize;
+    private final int concurrency;
+    private final int maxRetries;
+    private final ExecutorService executor;
+    // Общий бюджет памяти под буферы частей, в KiB
+    private final Semaphore bufferBudget;
+    private final int bufferBudgetKib;
+
+    private final Timer uploadTimer;
+    private final Timer failedUploadTimer;
+    private final Counter uploadedBytes;
+    private final Counter partRetries;
+    private final Counter abortedUploads;
+
+    public ParallelMultipartUploader(MinioAsyncClient minioAsyncClient,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${minio.bucket.name}") String bucketName,
+                                     @Value("${minio.upload.part-size:16MB}") DataSize partSize,
+                                     @Value("${minio.upload.parallel.concurrency:4}") int concurrency,
+                                     @Value("${minio.upload.parallel.threads:8}") int threads,
+                                     @Value("${minio.upload.parallel.max-retries:3}") int maxRetries,
+                                     @Value("${minio.upload.parallel.max-buffer-memory:256MB}") DataSize maxBufferMemory,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (partSize.toBytes() < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("minio.upload.part-size must be at least 5MB");
+        }
+        this.minioAsyncClient = minioAsyncClient;
+        this.bucketName = bucketName;
+        this.basePartSize = partSize.toBytes();
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.executor = virtualThreads ? createVirtualExecutor() : createExecutor(Math.max(1, threads));
+        this.bufferBudgetKib = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBufferMemory.toKilobytes()));
+        this.bufferBudget = new Semaphore(bufferBudgetKib);
+
+        this.uploadTimer = Timer.builder("storage.upload.parallel")
+                .description("Время параллельной multipart-загрузки объекта")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failedUploadTimer = Timer.builder("storage.upload.parallel")
+                .description("Время параллельной multipart-загрузки объекта")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.parallel.buffer.bytes", bufferBudget,
+                        budget -> (bufferBudgetKib - budget.availablePermits()) * 1024.0)
+                .description("Память, занятая буферами частей всех загрузок")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.uploadedBytes = Counter.builder("storage.upload.parallel.bytes")
+                .description("Байт, отправленных параллельной загрузкой")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.partRetries = Counter.builder("storage.upload.parallel.part.retries")
+                .description("Повторные попытки отправки частей")
+                .register(meterRegistry);
+        this.abortedUploads = Counter.builder("storage.upload.parallel.aborted")
+                .description("Отмененные multipart-загрузки")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поток на каждую часть. Общий пул здесь не нужен: число одновременных частей одной загрузки
+     * и так ограничено пулом буферов, а ожидание ответа MinIO не занимает поток платформы.
+     */
+    private static ExecutorService createVirtualExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-upload-", 1).factory());
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "storage-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Загружает поток в хранилище параллельными частями. Поток неизвестной длины, который закончился
+     * в пределах первой части, отправляется одним запросом без multipart-загрузки.
+     * @param inputStream Поток с содержимым
+     * @param size Размер в байтах или -1, если неизвестен
+     * @param contentType MIME-тип объекта
+     * @param objectName Имя объекта в bucket
+     * @return Ответ MinIO о завершенной загрузке
+     */
+    public ObjectWriteResponse upload(InputStream inputStream, long size, String contentType, String objectName) {
+        BufferPool buffers = new BufferPool(concurrency, bufferBudget, bufferBudgetKib);
+        try {
+            byte[] firstPart = null;
+            if (size < 0) {
+                // Поток неизвестной длины (например, из веб-формы) часто оказывается небольшим файлом. Первая часть
+                // читается до начала multipart-загрузки в буфер по размеру прочитанного; если поток на ней
+                // закончился, объект отправляется одним запросом
+                int firstPartLength = (int) partSizeFor(1, size);
+                firstPart = inputStream.readNBytes(firstPartLength);
+                buffers.adopt(firstPart);
+                if (firstPart.length < firstPartLength) {
+                    return putObject(objectName, contentType, firstPart);
+                }
+            }
+            return uploadParts(inputStream, size, contentType, objectName, buffers, firstPart);
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Upload of '" + objectName + "' failed", e);
+        } finally {
+            buffers.close();
+        }
+    }
+
+    /**
+     * Отправляет объект, целиком прочитанный в память, одним запросом.
+     */
+    private ObjectWriteResponse putObject(String objectName, String contentType, byte[] content) {
+        try {
+            PutObjectArgs.Builder args = PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .stream(new ByteArrayInputStream(content), content.length, -1);
+            if (StringUtils.hasText(contentType)) {
+                args.contentType(contentType);
+            }
+            ObjectWriteResponse response = minioAsyncClient.putObject(args.build()).get();
+            log.info("Object '{}' uploaded in a single request ({} bytes)", objectName, content.length);
+            return response;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Upload of '" + objectName + "' failed", cause);
+        }
+    }
+
+    /**
+     * Multipart-загрузка. Если первая часть уже прочитана ({@code firstPart}), поток продолжается со второй.
+     */
+    private ObjectWriteResponse uploadParts(InputStream inputStream, long size, String contentType, String objectName,
+                                            BufferPool buffers, byte[] firstPart) {
+        Timer.Sample sample = Timer.start();
+        String uploadId = createUpload(objectName, contentType);
+
+        List<CompletableFuture<Part>> futures = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            long totalRead = 0;
+            int partNumber = 0;
+            while (failure.get() == null) {
+                partNumber++;
+                if (partNumber > MAX_PARTS) {
+                    throw new IllegalStateException("Object exceeds the maximum number of parts: " + MAX_PARTS);
+                }
+                int partLength = (int) partSizeFor(partNumber, size);
+                if (size >= 0) {
+                    partLength = (int) Math.min(partLength, size - totalRead);
+                }
+
+                byte[] buffer;
+                int read;
+                if (partNumber == 1 && firstPart != null) {
+                    buffer = firstPart;
+                    read = firstPart.length;
+                } else {
+                    buffer = buffers.acquire(partLength);
+                    read = inputStream.readNBytes(buffer, 0, partLength);
+                }
+                // Пустой поток все равно загружаем одной пустой частью, иначе пропускаем хвост нулевой длины
+                if (read == 0 && partNumber > 1) {
+                    buffers.release(buffer);
+                    break;
+                }
+                totalRead += read;
+
+                final int number = partNumber;
+                CompletableFuture<Part> future = CompletableFuture.supplyAsync(
+                        () -> uploadPartWithRetry(objectName, uploadId, number, buffer, read), executor);
+                future.whenComplete((part, error) -> {
+                    buffers.release(buffer);
+                    if (error != null) {
+                        failure.compareAndSet(null, error);
+                    }
+                });
+                futures.add(future);
+
+                if (read < partLength || (size >= 0 && totalRead >= size)) {
+                    break;
+                }
+            }
+
+            if (size >= 0 && failure.get() == null && totalRead != size) {
+                throw new IOException("Stream ended after " + totalRead + " bytes, expected " + size);
+            }
+
+            Part[] parts = new Part[futures.size()];
+            for (int i = 0; i < futures.size(); i++) {
+                parts[i] = futures.get(i).get();
+            }
+            ObjectWriteResponse response = minioAsyncClient.completeMultipartUploadAsync(
+                    bucketName, null, objectName, uploadId, parts, null, null).get();
+
+            uploadedBytes.increment(totalRead);
+            sample.stop(uploadTimer);
+            log.info("Object '{}' uploaded in {} parts ({} bytes)", objectName, parts.length, totalRead);
+            return response;
+        } catch (Exception e) {
+            // Дожидаемся частей, которые еще в полете, иначе они могут появиться уже после отмены
+            awaitQuietly(futures);
+            abort(objectName, uploadId);
+            sample.stop(failedUploadTimer);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Parallel upload of '" + objectName + "' failed", cause);
+        }
+    }
+
+    private void awaitQuietly(List<CompletableFuture<Part>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .handle((ignored, error) -> null)
+                    .get(1, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("Not all parts finished before aborting the upload", e);
+        }
+    }
+
+    /**
+     * Размер части с учетом лимита в 10000 частей.
+     * Для известного размера часть увеличивается так, чтобы объект уместился в лимит.
+     * Для неизвестного размера часть удваивается каждые 2000 частей.
+     */
+    long partSizeFor(int partNumber, long size) {
+        long partSize;
+        if (size >= 0) {
+            long required = (size + MAX_PARTS - 1) / MAX_PARTS;
+            // Округляем до целого мегабайта вверх
+            long mib = 1024L * 1024;
+            partSize = Math.max(basePartSize, (required + mib - 1) / mib * mib);
+        } else {
+            int step = Math.min((partNumber - 1) / PARTS_PER_STEP, 8);
+            partSize = basePartSize << step;
+        }
+        return Math.min(partSize, MAX_PART_SIZE);
+    }
+
+    /**
+     * Начинает multipart-загрузку и возвращает ее ID.
+     */
+    String createUpload(String objectName, String contentType) {
+        Multimap<String, String> headers = StringUtils.hasText(contentType)
+                ? ImmutableMultimap.of("Content-Type", contentType)
+                : ImmutableMultimap.of();
+        try {
+            return minioAsyncClient.createMultipartUploadAsync(bucketName, null, objectName, headers, null)
+                    .get()
+                    .result()
+                    .uploadId();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Could not start multipart upload for '" + objectName + "'", e);
+        }
+    }
+
+    private Part uploadPartWithRetry(String objectName, String uploadId, int partNumber, byte[] data, int length) {
+        int attempt = 0;
+        while (true) {
+            try {
+                UploadPartResponse response = minioAsyncClient.uploadPartAsync(
+                        bucketName, null, objectName, data, length, uploadId, partNumber, null, null).get();
+                return new Part(partNumber, response.etag());
+            } catch (Exception e) {
+                if (e instanceof InterruptedException || attempt >= maxRetries) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new RuntimeException("Part " + partNumber + " of '" + objectName + "' failed", e);
+                }
+                attempt++;
+                partRetries.increment();
+                long delay = RETRY_BASE_DELAY_MS << (attempt - 1);
+                log.warn("Part {} of '{}' failed (attempt {}/{}), retrying in {} ms",
+                        partNumber, objectName, attempt, maxRetries, delay, e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Upload of part " + partNumber + " was interrupted", interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Завершает multipart-загрузку, части которой отправил кто-то другой (например, клиент по подписанным ссылкам).
+     * Список частей берется из самого хранилища, поэтому клиенту не нужно передавать их ETag.
+     */
+    ObjectWriteResponse completeUploadedParts(String objectName, String uploadId) {
+        try {
+            List<Part> parts = new ArrayList<>();
+            int marker = 0;
+            ListPartsResult result;
+            do {
+                result = minioAsyncClient.listPartsAsync(bucketName, null, objectName, 1000, marker, uploadId, null, null)
+                        .get()
+                        .result();
+                for (Part part : result.partList()) {
+                    parts.add(new Part(part.partNumber(), part.etag()));
+                }
+                marker = result.nextPartNumberMarker();
+            } while (result.isTruncated());
+
+            if (parts.isEmpty()) {
+                throw new IllegalStateException("Multipart upload " + uploadId + " has no uploaded parts");
+            }
+            ObjectWriteResponse response = minioAsyncClient.completeMultipartUploadAsync(
+                    bucketName, null, objectName, uploadId, parts.toArray(Part[]::new), null, null).get();
+            log.info("Object '{}' assembled from {} client-uploaded parts", objectName, parts.size());
+            return response;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Could not complete multipart upload for '" + objectName + "'", cause);
+        }
+    }
+
+    /**
+     * Отменяет multipart-загрузку и тем самым удаляет уже отправленные части. Ошибка только пишется в лог.
+     */
+    public void abort(String objectName, String uploadId) {
+        try {
+            abortOrThrow(objectName, uploadId);
+        } catch (RuntimeException e) {
+            log.error("Could not abort multipart upload {} of '{}'", uploadId, objectName, e);
+        }
+    }
+
+    /**
+     * Отменяет multipart-загрузку. Загрузка, которой уже нет (собрана или отменена), ошибкой не считается.
+     */
+    void abortOrThrow(String objectName, String uploadId) {
+        try {
+            minioAsyncClient.abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null).get();
+            abortedUploads.increment();
+            log.warn("Multipart upload {} of '{}' aborted", uploadId, objectName);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e;
+            while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof ErrorResponseException error && "NoSuchUpload".equals(error.errorResponse().code())) {
+                log.info("Multipart upload {} of '{}' no longer exists", uploadId, objectName);
+                return;
+            }
+            throw new RuntimeException("Could not abort multipart upload " + uploadId + " of '" + objectName + "'", cause);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Пул буферов одной загрузки. Ограничивает число частей, находящихся в памяти одновременно:
+     * чтение следующей части ждет, пока одна из отправленных не освободит свой буфер.
+     * <p>
+     * Каждый новый буфер занимает место в общем бюджете до {@link #close()}. Первый буфер ждет бюджет,
+     * остальные берут его, только если он свободен, - иначе загрузка ждет свой же буфер. Поэтому загрузки
+     * не могут заблокировать друг друга, удерживая часть бюджета. Методы, кроме release, вызываются
+     * только потоком, читающим загрузку.
+     */
+    private static final class BufferPool {
+
+        private final BlockingQueue<byte[]> free;
+        private final int capacity;
+        private final Semaphore budget;
+        private final int budgetKib;
+        private int allocated;
+        private int reservedKib;
+
+        BufferPool(int capacity, Semaphore budget, int budgetKib) {
+            this.capacity = capacity;
+            this.free = new ArrayBlockingQueue<>(capacity);
+            this.budget = budget;
+            this.budgetKib = budgetKib;
+        }
+
+        byte[] acquire(int minLength) throws InterruptedException {
+            byte[] buffer = free.poll();
+            while (true) {
+                if (buffer != null) {
+                    if (buffer.length >= minLength) {
+                        return buffer;
+                    }
+                    // Размер части вырос - старый буфер выбрасываем вместе с его долей бюджета
+                    drop(buffer);
+                }
+                if (allocated < capacity) {
+                    int kib = kib(minLength);
+                    if (allocated == 0) {
+                        budget.acquire(kib);
+                    } else if (!budget.tryAcquire(kib)) {
+                        buffer = free.take();
+                        continue;
+                    }
+                    allocated++;
+                    reservedKib += kib;
+                    return new byte[minLength];
+                }
+                buffer = free.take();
+            }
+        }
+
+        /**
+         * Учитывает в бюджете буфер, прочитанный до начала загрузки; дальше он используется как выделенный пулом.
+         */
+        void adopt(byte[] buffer) throws InterruptedException {
+            int kib = kib(buffer.length);
+            budget.acquire(kib);
+            allocated++;
+            reservedKib += kib;
+        }
+
+        void release(byte[] buffer) {
+            free.offer(buffer);
+        }
+
+        /**
+         * Возвращает бюджет всех буферов загрузки. Вызывается, когда ни одна часть больше не отправляется.
+         */
+        void close() {
+            budget.release(reservedKib);
+            reservedKib = 0;
+            allocated = 0;
+            free.clear();
+        }
+
+        private void drop(byte[] buffer) {
+            int kib = kib(buffer.length);
+            allocated--;
+            reservedKib -= kib;
+            budget.release(kib);
+        }
+
+        // Часть больше всего бюджета берет его целиком, иначе ждала бы вечно
+        private int kib(int length) {
+            return (int) Math.min(budgetKib, (length + 1023L) / 1024);
+        }
+    }
+}
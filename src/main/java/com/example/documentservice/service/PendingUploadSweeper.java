@@ -0,0 +1,61 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.repository.DocumentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Фоновая очистка прямых загрузок, которые клиент начал, но так и не подтвердил.
+ * <p>
+ * Документ в статусе PENDING старше {@code storage.upload.direct.pending-ttl} удаляется вместе с
+ * незавершенной multipart-загрузкой и объектом в хранилище. Каждый документ удаляется в своей транзакции
+ * с блокировкой строки, поэтому очистку можно запускать на нескольких узлах одновременно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PendingUploadSweeper {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final DocumentRepository documentRepository;
+    private final DocumentService documentService;
+
+    @Value("${storage.upload.direct.pending-ttl:24h}")
+    private Duration pendingTtl;
+
+    @Scheduled(fixedDelayString = "${storage.upload.direct.sweep-interval:PT10M}",
+               initialDelayString = "${storage.upload.direct.sweep-interval:PT10M}")
+    public void sweep() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(pendingTtl);
+        int removed = 0;
+        List<Long> ids;
+        do {
+            ids = documentRepository.findIdsByStatusAndUploadDateBefore(
+                    DocumentStatus.PENDING, createdBefore, PageRequest.of(0, BATCH_SIZE));
+            for (Long id : ids) {
+                try {
+                    if (documentService.removeExpiredUpload(id, createdBefore)) {
+                        removed++;
+                    }
+                } catch (Exception e) {
+                    log.error("Could not remove expired upload with ID: {}", id, e);
+                    return;
+                }
+            }
+        } while (ids.size() == BATCH_SIZE);
+
+        if (removed > 0) {
+            log.info("Removed {} expired direct upload(s)", removed);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.dto.UploadedContentDto;
+import com.example.documentservice.entity.StorageBlob;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Управляет объектами в хранилище с учетом дедупликации и счетчика ссылок.
+ */
+public interface StorageBlobService {
+
+    /**
+     * Загружает поток в хранилище, попутно считая SHA-256. В БД ничего не записывается: объект учитывается
+     * методом {@link #register} в той же транзакции, что и документ, который на него ссылается.
+     * Если до этого процесс упадет, в хранилище останется объект без записи - его найдет {@link StorageReconciler}.
+     * @param inputStream Поток с содержимым файла
+     * @param size Размер в байтах или -1, если неизвестен
+     * @param contentType MIME-тип файла
+     * @param storageKey Ключ, под которым объект загружается
+     * @return Загруженный объект с хешем и фактическим размером
+     */
+    UploadedContentDto upload(InputStream inputStream, long size, String contentType, String storageKey);
+
+    /**
+     * Учитывает загруженный объект в текущей транзакции (одна ссылка). Если такое содержимое уже хранится,
+     * возвращается существующий объект с увеличенным счетчиком ссылок, а загруженная копия ставится
+     * в очередь на удаление. При откате транзакции откатывается и ссылка.
+     * @param content Результат {@link #upload}
+     * @return Объект, на который должен ссылаться документ
+     */
+    StorageBlob register(UploadedContentDto content);
+
+    /**
+     * То же, что {@link #register}, для нескольких объектов одним запросом к БД. Вызывается до сохранения
+     * документов пачки: иначе каждый запрос сбрасывал бы накопленные вставки и пачки JDBC не получилось бы.
+     * @param contents Результаты {@link #upload}
+     * @return Объекты в порядке {@code contents}
+     */
+    List<StorageBlob> registerAll(List<UploadedContentDto> contents);
+
+    /**
+     * Регистрирует уже загруженный объект, хеш которого неизвестен (одна ссылка).
+     * @param storageKey Ключ объекта в хранилище
+     * @param size Размер в байтах
+     */
+    StorageBlob registerUnhashed(String storageKey, long size);
+
+    /**
+     * Добавляет ссылку на уже хранящееся содержимое, если на него ссылается хотя бы один документ
+     * этого пользователя. Чужое содержимое так получить нельзя: хеш и размер файла не доказывают,
+     * что он есть у клиента, а по ответу можно было бы узнать, что такой файл хранится у кого-то еще.
+     * @param sha256 SHA-256 содержимого в hex
+     * @param size Размер в байтах (должен совпасть)
+     * @param ownerId ID пользователя, для которого создается документ
+     * @return Объект с учтенной новой ссылкой или пустой Optional, если у пользователя такого содержимого нет
+     */
+    Optional<StorageBlob> acquire(String sha256, long size, Long ownerId);
+
+    /**
+     * Добавляет еще одну ссылку на объект (например, при сохранении копии расшаренного документа).
+     * @param blob Объект, на который уже ссылается исходный документ
+     * @return Тот же объект с учтенной новой ссылкой
+     */
+    StorageBlob addReference(StorageBlob blob);
+
+    /**
+     * Снимает одну ссылку. Когда ссылок не остается, запись удаляется, а объект ставится в очередь на удаление
+     * из хранилища (см. {@link #scheduleDeletion}).
+     * @param blob Объект, на который ссылался документ
+     */
+    void release(StorageBlob blob);
+
+    /**
+     * Считает SHA-256 объекта без хеша (например, после прямой загрузки). Если такое содержимое уже хранится
+     * под другим ключом, документы переводятся на существующий объект, а лишняя копия удаляется из хранилища.
+     * Повторный вызов для того же объекта ничего не делает.
+     * @param blobId ID объекта
+     */
+    void hashContent(Long blobId);
+
+    /**
+     * Ставит объект в очередь на удаление из хранилища в текущей транзакции. Сам объект удаляется в фоне
+     * пачками ({@link StorageDeletionDrainer}), поэтому вызывающий не ждет ответа хранилища.
+     * @param storageKey Ключ объекта в хранилище
+     */
+    void scheduleDeletion(String storageKey);
+
+    /**
+     * То же, что {@link #scheduleDeletion(String)}, но перед удалением объекта в фоне отменяется
+     * незавершенная multipart-загрузка {@code uploadId} вместе с уже загруженными частями.
+     * @param storageKey Ключ объекта в хранилище
+     * @param uploadId ID multipart-загрузки или null
+     */
+    void scheduleDeletion(String storageKey, String uploadId);
+}
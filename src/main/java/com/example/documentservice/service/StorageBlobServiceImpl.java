@@ -0,0 +1,210 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.dto.UploadedContentDto;
+import com.example.documentservice.entity.StorageBlob;
+import com.example.documentservice.entity.StorageDeletion;
+import com.example.documentservice.repository.DocumentRepository;
+import com.example.documentservice.repository.StorageBlobRepository;
+import com.example.documentservice.repository.StorageDeletionRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class StorageBlobServiceImpl implements StorageBlobService {
+
+    private final StorageBlobRepository storageBlobRepository;
+    private final FileStorageService fileStorageService;
+    private final DocumentRepository documentRepository;
+    private final StorageDeletionRepository storageDeletionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Не держим соединение с БД, пока идет передача файла
+    public UploadedContentDto upload(InputStream inputStream, long size, String contentType, String storageKey) {
+        // Хеш и размер считаются по ходу передачи, файл читается один раз
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        DigestInputStream digestStream = new DigestInputStream(countingStream, sha256Digest());
+        fileStorageService.uploadStream(digestStream, size, contentType, storageKey);
+        String sha256 = HexFormat.of().formatHex(digestStream.getMessageDigest().digest());
+        return new UploadedContentDto(storageKey, sha256, countingStream.getCount());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY) // Ссылка фиксируется только вместе с документом
+    public StorageBlob register(UploadedContentDto content) {
+        StorageBlob blob = storageBlobRepository.upsertReference(content.sha256(), content.storageKey(), content.size());
+        if (!blob.getStorageKey().equals(content.storageKey())) {
+            // Такое содержимое уже хранится - новая копия не нужна
+            log.info("Content of '{}' is already stored as '{}' (sha256 {}), duplicate scheduled for removal",
+                    content.storageKey(), blob.getStorageKey(), content.sha256());
+            scheduleDeletion(content.storageKey());
+        }
+        return blob;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<StorageBlob> registerAll(List<UploadedContentDto> contents) {
+        // Одинаковое содержимое в пачке регистрируется один раз: ON CONFLICT не может изменить строку дважды
+        Map<String, List<UploadedContentDto>> bySha256 = contents.stream()
+                .collect(Collectors.groupingBy(UploadedContentDto::sha256, LinkedHashMap::new, Collectors.toList()));
+        List<UploadedContentDto> first = bySha256.values().stream().map(group -> group.get(0)).toList();
+        Map<String, StorageBlob> blobs = storageBlobRepository.upsertReferences(
+                        first.stream().map(UploadedContentDto::sha256).toArray(String[]::new),
+                        first.stream().map(UploadedContentDto::storageKey).toArray(String[]::new),
+                        first.stream().map(UploadedContentDto::size).toArray(Long[]::new),
+                        bySha256.values().stream().map(List::size).toArray(Integer[]::new))
+                .stream()
+                .collect(Collectors.toMap(StorageBlob::getSha256, Function.identity()));
+
+        List<StorageBlob> result = new ArrayList<>(contents.size());
+        for (UploadedContentDto content : contents) {
+            StorageBlob blob = blobs.get(content.sha256());
+            if (!blob.getStorageKey().equals(content.storageKey())) {
+                log.info("Content of '{}' is already stored as '{}' (sha256 {}), duplicate scheduled for removal",
+                        content.storageKey(), blob.getStorageKey(), content.sha256());
+                scheduleDeletion(content.storageKey());
+            }
+            result.add(blob);
+        }
+        return result;
+    }
+
+    @Override
+    public StorageBlob registerUnhashed(String storageKey, long size) {
+        return storageBlobRepository.save(StorageBlob.builder()
+                .storageKey(storageKey)
+                .size(size)
+                .refCount(1)
+                .build());
+    }
+
+    @Override
+    public Optional<StorageBlob> acquire(String sha256, long size, Long ownerId) {
+        return storageBlobRepository.acquireOwnedByHash(sha256.toLowerCase(), size, ownerId);
+    }
+
+    @Override
+    public StorageBlob addReference(StorageBlob blob) {
+        if (blob == null || storageBlobRepository.incrementRefCount(blob.getId()) == 0) {
+            // Последняя ссылка успела исчезнуть, объект уже удаляется
+            throw new EntityNotFoundException("Stored content is no longer available");
+        }
+        return blob;
+    }
+
+    @Override
+    public void release(StorageBlob blob) {
+        // Ключ читается до удаления записи: blob может быть еще не загруженным LAZY-прокси
+        String storageKey = blob.getStorageKey();
+        storageBlobRepository.decrementRefCount(blob.getId());
+        // Условное удаление: если параллельно кто-то успел добавить ссылку, запись останется
+        if (storageBlobRepository.deleteIfUnreferenced(blob.getId()) > 0) {
+            scheduleDeletion(storageKey);
+            log.info("Last reference to '{}' released, object scheduled for removal from storage", storageKey);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Не держим соединение с БД, пока читается файл
+    public void hashContent(Long blobId) {
+        StorageBlob blob = storageBlobRepository.findById(blobId).orElse(null);
+        if (blob == null || blob.getSha256() != null) {
+            return;
+        }
+
+        MessageDigest digest = sha256Digest();
+        if (blob.getSize() > 0) {
+            // Чтение диапазоном не заполняет дисковый кэш: хеширование не вытесняет из него часто скачиваемые файлы
+            try (InputStream in = new DigestInputStream(
+                    fileStorageService.downloadFile(blob.getStorageKey(), 0, blob.getSize()), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading object '" + blob.getStorageKey() + "'", e);
+            }
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+
+        transactionTemplate.executeWithoutResult(status -> assignHash(blobId, sha256));
+    }
+
+    /**
+     * Записывает хеш или, если такое содержимое уже хранится, переводит документы на существующий объект.
+     * Обе записи блокируются: параллельные addReference/release ждут конца транзакции.
+     * Лишняя копия ставится в очередь на удаление в той же транзакции.
+     */
+    private void assignHash(Long blobId, String sha256) {
+        StorageBlob source = storageBlobRepository.findByIdForUpdate(blobId).orElse(null);
+        if (source == null || source.getSha256() != null) {
+            return;
+        }
+        StorageBlob target = storageBlobRepository.findBySha256ForUpdate(sha256).orElse(null);
+        if (target == null) {
+            source.setSha256(sha256);
+            log.info("Object '{}' hashed (sha256 {})", source.getStorageKey(), sha256);
+            return;
+        }
+        if (target.getRefCount() <= 0) {
+            // Существующая копия как раз удаляется; хеш будет записан при повторе задачи
+            throw new IllegalStateException("Object with sha256 " + sha256 + " is being removed");
+        }
+
+        int moved = documentRepository.moveToBlob(source, target, target.getStorageKey());
+        target.setRefCount(target.getRefCount() + moved);
+        source.setRefCount(source.getRefCount() - moved);
+        if (source.getRefCount() > 0) {
+            return;
+        }
+        storageBlobRepository.delete(source);
+        scheduleDeletion(source.getStorageKey());
+        log.info("Object '{}' has the same content as '{}' (sha256 {}), {} document(s) moved, duplicate scheduled for removal",
+                source.getStorageKey(), target.getStorageKey(), sha256, moved);
+    }
+
+    @Override
+    public void scheduleDeletion(String storageKey) {
+        scheduleDeletion(storageKey, null);
+    }
+
+    @Override
+    public void scheduleDeletion(String storageKey, String uploadId) {
+        storageDeletionRepository.save(StorageDeletion.builder()
+                .storageKey(storageKey)
+                .uploadId(uploadId)
+                .runAt(LocalDateTime.now())
+                .build());
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.StorageDeletion;
+import com.example.documentservice.repository.StorageDeletionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Удаляет из хранилища объекты из outbox {@code storage_deletions}.
+ * <p>
+ * Объекты удаляются пачками одним запросом к MinIO (multi-object delete); если у записи есть upload_id,
+ * перед этим отменяется незавершенная multipart-загрузка. Пачки берутся с SKIP LOCKED,
+ * поэтому очередь можно разбирать на нескольких узлах. Неудачные удаления повторяются с удваивающейся
+ * задержкой до {@code storage.deletion.max-backoff}; попытки не ограничены, иначе объект остался бы в
+ * хранилище навсегда. Метрика storage.deletions.pending - число записей в очереди.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageDeletionDrainer {
+
+    // Ограничение S3 на число объектов в одном запросе удаления
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final StorageDeletionRepository storageDeletionRepository;
+    private final FileStorageService fileStorageService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.deletion.batch-size:500}")
+    private int batchSize;
+
+    // Пока пачка удаляется, другие узлы ее не берут; если узел упал, пачку возьмут по истечении аренды
+    @Value("${storage.deletion.lease:5m}")
+    private Duration lease;
+
+    @Value("${storage.deletion.backoff:30s}")
+    private Duration backoff;
+
+    @Value("${storage.deletion.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("storage.deletions.pending", storageDeletionRepository, StorageDeletionRepository::count)
+                .description("Objects waiting to be removed from storage")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.deletion.poll-interval:PT5S}")
+    public void drain() {
+        int limit = Math.min(batchSize, MAX_BATCH_SIZE);
+        List<StorageDeletion> batch;
+        do {
+            batch = storageDeletionRepository.claimDue(limit, lease.toSeconds());
+            if (!batch.isEmpty()) {
+                deleteBatch(batch);
+            }
+        } while (batch.size() == limit);
+    }
+
+    private void deleteBatch(List<StorageDeletion> batch) {
+        // Незавершенная multipart-загрузка отменяется до удаления объекта, иначе ее части остались бы в хранилище.
+        // Если отмена не удалась, объект в этот раз не удаляется - запись повторится целиком
+        Map<Long, String> abortErrors = new HashMap<>();
+        for (StorageDeletion deletion : batch) {
+            if (deletion.getUploadId() != null) {
+                try {
+                    fileStorageService.abortMultipartUpload(deletion.getStorageKey(), deletion.getUploadId());
+                } catch (Exception e) {
+                    log.warn("Could not abort multipart upload of '{}', will retry: {}",
+                            deletion.getStorageKey(), e.getMessage());
+                    abortErrors.put(deletion.getId(), describe(e));
+                }
+            }
+        }
+
+        // Один ключ может попасть в очередь дважды (например, при повторе удаления) - в запросе он нужен один раз
+        Set<String> keys = new HashSet<>();
+        batch.stream()
+                .filter(deletion -> !abortErrors.containsKey(deletion.getId()))
+                .forEach(deletion -> keys.add(deletion.getStorageKey()));
+
+        Set<String> failed = Set.of();
+        String error = null;
+        if (!keys.isEmpty()) {
+            try {
+                failed = new HashSet<>(fileStorageService.deleteFiles(keys));
+                error = "Storage rejected the deletion";
+            } catch (Exception e) {
+                log.warn("Could not delete {} object(s) from storage, will retry: {}", keys.size(), e.getMessage());
+                failed = keys;
+                error = describe(e);
+            }
+        }
+
+        List<Long> done = new ArrayList<>();
+        for (StorageDeletion deletion : batch) {
+            String abortError = abortErrors.get(deletion.getId());
+            if (abortError != null) {
+                storageDeletionRepository.reschedule(deletion.getId(), nextAttemptAt(deletion.getAttempts()), abortError);
+            } else if (failed.contains(deletion.getStorageKey())) {
+                storageDeletionRepository.reschedule(deletion.getId(), nextAttemptAt(deletion.getAttempts()), error);
+            } else {
+                done.add(deletion.getId());
+            }
+        }
+        if (!done.isEmpty()) {
+            storageDeletionRepository.deleteByIds(done);
+        }
+    }
+
+    private static String describe(Exception e) {
+        String error = e.getClass().getName() + ": " + e.getMessage();
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private LocalDateTime nextAttemptAt(int attempts) {
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (delay.compareTo(maxBackoff) > 0) {
+            delay = maxBackoff;
+        }
+        return LocalDateTime.now().plus(delay);
+    }
+}
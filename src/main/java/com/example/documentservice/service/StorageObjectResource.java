@@ -0,0 +1,140 @@
+package com.example.documentservice.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Ресурс, указывающий на объект в хранилище.
+ * <p>
+ * В отличие от InputStreamResource, ничего не открывает при создании: запрос к хранилищу выполняется
+ * в {@link #getInputStream()}, то есть до записи заголовков ответа - отсутствующий объект дает ошибку,
+ * а не оборванный 200. Размер известен заранее (из метаданных документа), поэтому
+ * {@link #contentLength()} не требует обращения к хранилищу. Для HTTP Range умеет читать
+ * отдельный диапазон байт, не скачивая объект целиком.
+ */
+public class StorageObjectResource extends AbstractResource {
+
+    private final FileStorageService fileStorageService;
+    private final String storageFileName;
+    private final long size;
+
+    public StorageObjectResource(FileStorageService fileStorageService, String storageFileName, long size) {
+        this.fileStorageService = fileStorageService;
+        this.storageFileName = storageFileName;
+        this.size = size;
+    }
+
+    public String getStorageFileName() {
+        return storageFileName;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return fileStorageService.downloadFile(storageFileName);
+    }
+
+    /**
+     * Поток с диапазоном байт объекта. Диапазон передается в хранилище (offset/length),
+     * поэтому лишние байты не запрашиваются.
+     * @param offset Смещение первого байта
+     * @param length Количество байт
+     */
+    public InputStream getInputStream(long offset, long length) {
+        return fileStorageService.downloadFile(storageFileName, offset, length);
+    }
+
+    /**
+     * То же, что {@link #getInputStream(long, long)}, но диапазон запрашивается при первом чтении.
+     * Для частей multipart/byteranges после первой: иначе все диапазоны держали бы соединения с хранилищем
+     * с самого начала ответа.
+     */
+    public InputStream getLazyInputStream(long offset, long length) {
+        return new LazyInputStream(() -> fileStorageService.downloadFile(storageFileName, offset, length));
+    }
+
+    /**
+     * Локальная копия объекта (например, из дискового кэша), если она есть и актуальна.
+     */
+    public Optional<Path> getLocalFile() {
+        return fileStorageService.getLocalCopy(storageFileName);
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Storage object [" + storageFileName + "]";
+    }
+
+    /**
+     * Поток, который открывает объект в хранилище только при первом обращении к данным.
+     */
+    private static final class LazyInputStream extends InputStream {
+
+        private final Supplier<InputStream> opener;
+        private InputStream delegate;
+        private boolean closed;
+
+        private LazyInputStream(Supplier<InputStream> opener) {
+            this.opener = opener;
+        }
+
+        private InputStream delegate() throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+            if (delegate == null) {
+                delegate = opener.get();
+            }
+            return delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return delegate().skip(n);
+        }
+
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            // Передаем вызов источнику: у потока из кэша в памяти transferTo пишет массив без промежуточного буфера
+            return delegate().transferTo(out);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate == null ? 0 : delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+    }
+}
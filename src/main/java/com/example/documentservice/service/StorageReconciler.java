@@ -0,0 +1,314 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.dto.StoredObjectSummaryDto;
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.repository.DocumentRepository;
+import com.example.documentservice.repository.StorageBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Сверка хранилища с БД.
+ * <p>
+ * Листинг бакета и отсортированные ключи из БД читаются параллельно и сравниваются как при merge join:
+ * оба источника читаются страницами, поэтому память не зависит от числа объектов.
+ * Находятся два вида расхождений:
+ * <ul>
+ *     <li>объект без записи в БД - например, после сбоя между загрузкой файла и сохранением документа.
+ *     Объекты моложе {@code storage.reconcile.grace} пропускаются: их загрузка может быть еще не завершена.
+ *     При {@code storage.reconcile.repair=true} такие объекты ставятся в очередь на удаление;</li>
+ *     <li>запись storage_blobs без объекта - документы с этим файлом нельзя скачать. Такие записи только
+ *     попадают в лог и метрики: содержимое восстановить нельзя.</li>
+ * </ul>
+ * Ключи из БД читаются страницами "ключ > последний" (keyset), каждая страница - отдельный короткий запрос,
+ * а исправления фиксируются сразу. Сверка идет часами, и одна длинная транзакция удерживала бы горизонт
+ * очистки (xmin) для всей БД. Страница видит БД на момент своего запроса, а листинг идет своим темпом,
+ * поэтому каждое расхождение перепроверяется отдельным запросом.
+ * <p>
+ * На нескольких узлах одновременно работает только одна сверка: она держит сессионный advisory lock
+ * PostgreSQL на отдельном соединении без транзакции. Если узел упадет, блокировка снимется вместе с соединением.
+ * <p>
+ * Метрики: storage.reconcile.scanned (прогресс текущей сверки по источнику), storage.reconcile.mismatches
+ * (найденные расхождения по типу), storage.reconcile.repaired, storage.reconcile.duration,
+ * storage.reconcile.last.success (время последней завершенной сверки).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageReconciler {
+
+    // Ключ advisory lock сверки; должен быть одинаковым на всех узлах
+    private static final long LOCK_KEY = 0x7265636f6e63L;
+
+    private static final long PROGRESS_LOG_INTERVAL = 100_000;
+
+    // Страница ключей, о которых знает БД, после заданного в порядке листинга S3 (COLLATE "C" - побайтово).
+    // Из каждой таблицы берется не больше страницы (индексы из V16), поэтому в первые limit ключей
+    // объединения попадают все таблицы, где эти ключи есть.
+    // required - объект обязан существовать; объект ожидающей загрузки или уже поставленный
+    // в очередь на удаление может отсутствовать
+    private static final String KNOWN_KEYS_PAGE_SQL =
+            "SELECT storage_key, bool_or(required) AS required FROM (" +
+            "    (SELECT storage_key COLLATE \"C\" AS storage_key, true AS required FROM storage_blobs" +
+            "     WHERE storage_key COLLATE \"C\" > ? ORDER BY 1 LIMIT ?)" +
+            "    UNION ALL (SELECT DISTINCT storage_file_name COLLATE \"C\", false FROM documents" +
+            "     WHERE storage_file_name COLLATE \"C\" > ? ORDER BY 1 LIMIT ?)" +
+            "    UNION ALL (SELECT DISTINCT storage_key COLLATE \"C\", false FROM storage_deletions" +
+            "     WHERE storage_key COLLATE \"C\" > ? ORDER BY 1 LIMIT ?)" +
+            ") keys GROUP BY storage_key ORDER BY storage_key LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final FileStorageService fileStorageService;
+    private final StorageBlobService storageBlobService;
+    private final StorageBlobRepository storageBlobRepository;
+    private final DocumentRepository documentRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.reconcile.grace:1h}")
+    private Duration grace;
+
+    @Value("${storage.reconcile.repair:false}")
+    private boolean repair;
+
+    // Сколько ключей из БД читается одним запросом
+    @Value("${storage.reconcile.page-size:1000}")
+    private int pageSize;
+
+    private final AtomicLong objectsScanned = new AtomicLong();
+    private final AtomicLong keysScanned = new AtomicLong();
+    private final AtomicLong lastSuccess = new AtomicLong();
+    private Counter orphanObjects;
+    private Counter missingObjects;
+    private Counter repairedObjects;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("storage.reconcile.scanned", objectsScanned, AtomicLong::get)
+                .description("Entries read by the current or last reconciliation")
+                .tag("source", "storage")
+                .register(meterRegistry);
+        Gauge.builder("storage.reconcile.scanned", keysScanned, AtomicLong::get)
+                .description("Entries read by the current or last reconciliation")
+                .tag("source", "database")
+                .register(meterRegistry);
+        Gauge.builder("storage.reconcile.last.success", lastSuccess, AtomicLong::get)
+                .description("Epoch seconds of the last completed reconciliation")
+                .register(meterRegistry);
+        this.orphanObjects = Counter.builder("storage.reconcile.mismatches")
+                .description("Mismatches between the storage and the database")
+                .tag("type", "orphan_object")
+                .register(meterRegistry);
+        this.missingObjects = Counter.builder("storage.reconcile.mismatches")
+                .description("Mismatches between the storage and the database")
+                .tag("type", "missing_object")
+                .register(meterRegistry);
+        this.repairedObjects = Counter.builder("storage.reconcile.repaired")
+                .description("Orphan objects scheduled for removal")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.reconcile.interval:PT6H}",
+               initialDelayString = "${storage.reconcile.initial-delay:PT10M}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // Соединение с блокировкой остается в autocommit и простаивает, пока идет сверка: транзакции на нем нет
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!advisoryLock(lockConnection, "pg_try_advisory_lock")) {
+                log.debug("Storage reconciliation is already running on another node");
+                return;
+            }
+            Run run;
+            try {
+                run = compare();
+            } finally {
+                advisoryLock(lockConnection, "pg_advisory_unlock");
+            }
+            long nanos = sample.stop(Timer.builder("storage.reconcile.duration")
+                    .description("Storage reconciliation run time")
+                    .register(meterRegistry));
+            lastSuccess.set(Instant.now().getEpochSecond());
+            log.info("Storage reconciliation finished in {}: {} object(s), {} known key(s), {} orphan object(s) ({} scheduled for removal), {} missing object(s)",
+                    Duration.ofNanos(nanos), objectsScanned.get(), keysScanned.get(), run.orphans, run.repaired, run.missing);
+        } catch (Exception e) {
+            log.error("Storage reconciliation failed", e);
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private Run compare() {
+        objectsScanned.set(0);
+        keysScanned.set(0);
+        Instant modifiedBefore = Instant.now().minus(grace);
+        Run run = new Run();
+
+        try (Stream<StoredObjectSummaryDto> objects = fileStorageService.listFiles()) {
+            Iterator<StoredObjectSummaryDto> objectIterator = objects.iterator();
+            Iterator<KnownKey> keyIterator = new KnownKeyIterator();
+            StoredObjectSummaryDto object = nextObject(objectIterator);
+            KnownKey key = nextKey(keyIterator);
+            while (object != null || key != null) {
+                int order = object == null ? 1 : key == null ? -1 : compareKeys(object.name(), key.name());
+                if (order < 0) {
+                    checkOrphan(object, modifiedBefore, run);
+                    object = nextObject(objectIterator);
+                } else if (order > 0) {
+                    if (key.required()) {
+                        checkMissing(key.name(), run);
+                    }
+                    key = nextKey(keyIterator);
+                } else {
+                    object = nextObject(objectIterator);
+                    key = nextKey(keyIterator);
+                }
+            }
+        }
+        return run;
+    }
+
+    private void checkOrphan(StoredObjectSummaryDto object, Instant modifiedBefore, Run run) {
+        String name = object.name();
+        if (object.lastModified().isAfter(modifiedBefore)
+            || storageBlobRepository.existsByStorageKey(name)
+            || documentRepository.existsByStorageFileNameAndStatus(name, DocumentStatus.PENDING)) {
+            // Загрузка еще может завершиться записью в БД или запись появилась после запуска сверки
+            return;
+        }
+        run.orphans++;
+        orphanObjects.increment();
+        if (repair) {
+            storageBlobService.scheduleDeletion(name);
+            run.repaired++;
+            repairedObjects.increment();
+            log.info("Orphan object '{}' ({} bytes, modified {}) scheduled for removal", name, object.size(), object.lastModified());
+        } else {
+            log.warn("Orphan object '{}' ({} bytes, modified {}) is not referenced by any document",
+                    name, object.size(), object.lastModified());
+        }
+    }
+
+    private void checkMissing(String name, Run run) {
+        if (!storageBlobRepository.existsByStorageKey(name) || fileStorageService.statFile(name).isPresent()) {
+            // Запись удалена или объект загружен после того, как листинг прошел этот ключ
+            return;
+        }
+        run.missing++;
+        missingObjects.increment();
+        log.error("Object '{}' is missing from storage, documents referencing it cannot be downloaded", name);
+    }
+
+    private StoredObjectSummaryDto nextObject(Iterator<StoredObjectSummaryDto> iterator) {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        if (objectsScanned.incrementAndGet() % PROGRESS_LOG_INTERVAL == 0) {
+            log.info("Storage reconciliation: {} object(s) checked", objectsScanned.get());
+        }
+        return iterator.next();
+    }
+
+    private KnownKey nextKey(Iterator<KnownKey> iterator) {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        keysScanned.incrementAndGet();
+        return iterator.next();
+    }
+
+    /**
+     * Сравнивает ключи в порядке листинга S3 (побайтово в UTF-8). Он совпадает с порядком кодовых точек,
+     * но не с {@link String#compareTo}, который сравнивает UTF-16 и иначе упорядочивает символы вне BMP.
+     */
+    static int compareKeys(String a, String b) {
+        int i = 0;
+        while (i < a.length() && i < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(i);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+        }
+        return Integer.compare(a.length() - i, b.length() - i);
+    }
+
+    private record KnownKey(String name, boolean required) {
+    }
+
+    /**
+     * Ключи из БД по порядку; следующая страница запрашивается, когда закончилась текущая.
+     */
+    private class KnownKeyIterator implements Iterator<KnownKey> {
+
+        // Пустая строка меньше любого ключа
+        private String lastKey = "";
+        private Iterator<KnownKey> page = Collections.emptyIterator();
+        private boolean lastPage;
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !lastPage) {
+                List<KnownKey> keys = jdbcTemplate.query(KNOWN_KEYS_PAGE_SQL,
+                        (rs, rowNum) -> new KnownKey(rs.getString("storage_key"), rs.getBoolean("required")),
+                        lastKey, pageSize, lastKey, pageSize, lastKey, pageSize, pageSize);
+                lastPage = keys.size() < pageSize;
+                if (!keys.isEmpty()) {
+                    lastKey = keys.get(keys.size() - 1).name();
+                }
+                page = keys.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public KnownKey next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+    }
+
+    private static class Run {
+        long orphans;
+        long repaired;
+        long missing;
+    }
+}
@@ -4,4 +4,11 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 
 public interface UserService {
     UserDetailsService userDetailsService();
+
+    /**
+     * Удаляет пользователя из кэша. Вызывается при изменении или удалении пользователя,
+     * чтобы новые роли и пароль применялись сразу, а не после истечения TTL.
+     * @param username Имя пользователя
+     */
+    void evictUser(String username);
 }
@@ -1,20 +1,99 @@
 package com.example.documentservice.service;
 
+import com.example.documentservice.entity.User;
 import com.example.documentservice.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Сколько пользователь живет в кэше. Явная очистка при изменении - в UserCacheListener, TTL - страховка
+    @Value("${security.user-cache.ttl:5m}")
+    private Duration userCacheTtl;
+
+    @Value("${security.user-cache.max-size:10000}")
+    private long userCacheMaxSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Пользователь ищется на каждом аутентифицированном запросе, поэтому держим его в памяти.
+    // С виртуальными потоками кэш асинхронный: синхронный Caffeine выполняет загрузку внутри
+    // ConcurrentHashMap.compute (synchronized), и виртуальный поток оставался бы закрепленным за
+    // потоком-носителем на все время запроса к БД. Потокам платформы это не мешает - для них кэш синхронный,
+    // без лишней передачи загрузки в другой поток
+    private Cache<String, User> users;
+    // null без виртуальных потоков
+    private AsyncCache<String, User> asyncUsers;
+    private ExecutorService loaderExecutor;
+
+    @PostConstruct
+    void init() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(userCacheTtl)
+                .maximumSize(userCacheMaxSize)
+                .recordStats();
+        if (virtualThreads) {
+            this.loaderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            this.asyncUsers = builder.executor(loaderExecutor).buildAsync();
+            this.users = asyncUsers.synchronous();
+            CaffeineCacheMetrics.monitor(meterRegistry, asyncUsers, "users");
+        } else {
+            this.users = builder.build();
+            CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (loaderExecutor != null) {
+            loaderExecutor.close();
+        }
+    }
 
     @Override
     public UserDetailsService userDetailsService() {
-        return username -> userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return username -> {
+            // Если пользователя нет, загрузчик возвращает null и в кэш ничего не попадает
+            User user = asyncUsers != null
+                    ? asyncUsers.get(username, (key, executor) -> CompletableFuture.supplyAsync(
+                            () -> findUser(key), executor)).join()
+                    : users.get(username, this::findUser);
+            if (user == null) {
+                throw new UsernameNotFoundException("User not found");
+            }
+            return user;
+        };
+    }
+
+    @Override
+    public void evictUser(String username) {
+        if (username != null) {
+            users.invalidate(username);
+        }
+    }
+
+    private User findUser(String username) {
+        return userRepository.findByUsername(username).orElse(null);
     }
 }
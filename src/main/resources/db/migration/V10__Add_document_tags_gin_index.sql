@@ -0,0 +1,4 @@
+-- V10: GIN-индекс по тегам для фильтров ANY (&&) и ALL (@>)
+-- Строится без блокировки записи, поэтому миграция выполняется вне транзакции (см. .sql.conf)
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_tags ON documents USING GIN (tags);
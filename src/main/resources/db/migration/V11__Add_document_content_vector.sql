@@ -0,0 +1,26 @@
+-- V11: Поиск по содержимому файлов
+-- Текст, извлеченный из файла в фоне, хранится как tsvector (вес D) и добавляется к поисковому вектору документа.
+-- content_indexed_at IS NULL - содержимое еще не обработано
+
+ALTER TABLE documents
+    ADD COLUMN content_vector     TSVECTOR,
+    ADD COLUMN content_indexed_at TIMESTAMP;
+
+CREATE OR REPLACE FUNCTION documents_refresh_search_vector()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    NEW.search_vector := documents_search_vector(NEW.file_name, NEW.category, array_to_string(NEW.tags, ' '))
+                             || coalesce(NEW.content_vector, ''::tsvector);
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER trg_documents_search_vector ON documents;
+CREATE TRIGGER trg_documents_search_vector
+    BEFORE INSERT OR UPDATE OF file_name, category, tags, content_vector
+    ON documents
+    FOR EACH ROW
+EXECUTE FUNCTION documents_refresh_search_vector();
@@ -0,0 +1,33 @@
+-- V13: Очередь фоновых задач после загрузки (хеширование содержимого, индексация текста)
+-- Задача ставится в той же транзакции, что и запись документа, и удаляется после успешного выполнения.
+-- Взятая в работу задача не удаляется из очереди: run_at сдвигается на время аренды, и если обработчик
+-- упал вместе с узлом, задачу по истечении аренды возьмет другой.
+
+CREATE TABLE background_jobs
+(
+    id         BIGSERIAL PRIMARY KEY,
+    type       VARCHAR(50) NOT NULL,
+    -- ID объекта, с которым работает задача (документ или объект в хранилище - зависит от типа)
+    target_id  BIGINT      NOT NULL,
+    -- PENDING - ждет выполнения или выполняется; FAILED - попытки исчерпаны
+    status     VARCHAR(20) NOT NULL,
+    attempts   INTEGER     NOT NULL DEFAULT 0,
+    run_at     TIMESTAMP   NOT NULL,
+    created_at TIMESTAMP   NOT NULL,
+    last_error TEXT
+);
+
+-- Выбор задач к выполнению: WHERE status = 'PENDING' AND run_at <= now() ORDER BY run_at
+CREATE INDEX idx_background_jobs_pending ON background_jobs (run_at) WHERE status = 'PENDING';
+
+-- Документы и объекты, загруженные до появления очереди
+INSERT INTO background_jobs (type, target_id, status, run_at, created_at)
+SELECT 'HASH_BLOB', id, 'PENDING', now(), now()
+FROM storage_blobs
+WHERE sha256 IS NULL;
+
+INSERT INTO background_jobs (type, target_id, status, run_at, created_at)
+SELECT 'INDEX_CONTENT', id, 'PENDING', now(), now()
+FROM documents
+WHERE content_indexed_at IS NULL
+  AND status = 'ACTIVE';
@@ -0,0 +1,16 @@
+-- V14: Outbox удалений объектов из хранилища
+-- Запись добавляется в той же транзакции, что и удаление документа (или последней ссылки на объект);
+-- сами объекты удаляются в фоне пачками, и удаление документа не ждет MinIO.
+
+CREATE TABLE storage_deletions
+(
+    id          BIGSERIAL PRIMARY KEY,
+    storage_key VARCHAR(255) NOT NULL,
+    attempts    INTEGER      NOT NULL DEFAULT 0,
+    -- Когда запись можно взять: время постановки, следующей попытки или окончания аренды
+    run_at      TIMESTAMP    NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    last_error  TEXT
+);
+
+CREATE INDEX idx_storage_deletions_run_at ON storage_deletions (run_at);
@@ -0,0 +1,7 @@
+-- V15: Идентификаторы документов и фоновых задач выдаются из последовательности блоками по 50
+-- (pooled-оптимизатор Hibernate). С IDENTITY Hibernate выполняет INSERT сразу, чтобы узнать ключ,
+-- и вставки нельзя отправить пачкой (JDBC batch); с блоком ключей вставки пакетной загрузки идут пачками.
+-- Значение по умолчанию (nextval) продолжает работать: каждый вызов просто резервирует целый блок.
+
+ALTER SEQUENCE documents_id_seq INCREMENT BY 50;
+ALTER SEQUENCE background_jobs_id_seq INCREMENT BY 50;
@@ -0,0 +1,14 @@
+-- V16: Индексы для постраничного чтения ключей хранилища при сверке (StorageReconciler)
+--
+-- Сверка идет по ключам в порядке листинга S3 (побайтово, COLLATE "C") страницами "ключ > последний",
+-- каждая страница - короткий запрос. Без индексов в этом порядке каждая страница сортировала бы таблицу целиком.
+-- Миграция без транзакции (см. V16__Add_storage_key_order_indexes.sql.conf), как и V8.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_storage_blobs_storage_key_c
+    ON storage_blobs (storage_key COLLATE "C");
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_storage_file_name_c
+    ON documents (storage_file_name COLLATE "C");
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_storage_deletions_storage_key_c
+    ON storage_deletions (storage_key COLLATE "C");
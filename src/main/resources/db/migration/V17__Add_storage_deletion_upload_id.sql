@@ -0,0 +1,5 @@
+-- V17: Отмена незавершенных multipart-загрузок через outbox удалений
+-- Если задан upload_id, перед удалением объекта отменяется multipart-загрузка (вместе с уже загруженными частями).
+-- Раньше отмена выполнялась прямо в транзакции удаления документа и держала блокировки, пока отвечает MinIO.
+
+ALTER TABLE storage_deletions ADD COLUMN upload_id VARCHAR(255);
@@ -0,0 +1,12 @@
+-- V2: Статус документа для прямой загрузки в хранилище по подписанным ссылкам
+
+-- Все существующие документы уже загружены
+ALTER TABLE documents
+    ADD COLUMN status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE';
+
+-- ID multipart-загрузки в MinIO, пока документ ожидает подтверждения
+ALTER TABLE documents
+    ADD COLUMN upload_id VARCHAR(255);
+
+-- Фоновая очистка ищет только незавершенные загрузки, их мало
+CREATE INDEX idx_documents_pending_upload_date ON documents (upload_date) WHERE status = 'PENDING';
@@ -0,0 +1,36 @@
+-- V3: Дедупликация содержимого. Одинаковые файлы хранятся в MinIO один раз,
+-- документы ссылаются на общий объект через storage_blobs со счетчиком ссылок.
+
+CREATE TABLE storage_blobs
+(
+    id          BIGSERIAL PRIMARY KEY,
+    -- SHA-256 в hex; NULL, пока хеш не посчитан (уникальность на NULL не распространяется)
+    sha256      VARCHAR(64),
+    storage_key VARCHAR(255) NOT NULL,
+    size        BIGINT       NOT NULL,
+    ref_count   INTEGER      NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    CONSTRAINT uk_storage_blobs_sha256 UNIQUE (sha256),
+    CONSTRAINT uk_storage_blobs_storage_key UNIQUE (storage_key)
+);
+
+ALTER TABLE documents
+    ADD COLUMN blob_id BIGINT;
+
+ALTER TABLE documents
+    ADD CONSTRAINT fk_documents_on_blob FOREIGN KEY (blob_id) REFERENCES storage_blobs (id);
+
+CREATE INDEX idx_documents_blob_id ON documents (blob_id);
+
+-- Существующие файлы: по одному объекту на ключ, хеш посчитать без чтения файла нельзя
+INSERT INTO storage_blobs (storage_key, size, ref_count, created_at)
+SELECT storage_file_name, MAX(size), COUNT(*), MIN(upload_date)
+FROM documents
+WHERE status = 'ACTIVE'
+GROUP BY storage_file_name;
+
+UPDATE documents d
+SET blob_id = b.id
+FROM storage_blobs b
+WHERE b.storage_key = d.storage_file_name
+  AND d.status = 'ACTIVE';
@@ -0,0 +1,10 @@
+-- V4: ETag документа для условных запросов (If-None-Match / If-Range)
+
+ALTER TABLE documents
+    ADD COLUMN etag VARCHAR(255);
+
+-- Для уже загруженных файлов хеш содержимого неизвестен. Объект под ключом хранилища
+-- после загрузки не меняется, поэтому производное от ключа значение - корректный валидатор.
+UPDATE documents
+SET etag = md5(storage_file_name)
+WHERE status = 'ACTIVE';
@@ -0,0 +1,14 @@
+-- V5: Индексы для постраничного чтения списков по курсору (upload_date, id)
+
+-- Документы пользователя: фильтр по владельцу, порядок - от новых к старым
+CREATE INDEX idx_documents_owner_upload_date_id ON documents (user_id, upload_date DESC, id DESC) WHERE status = 'ACTIVE';
+
+-- Все документы (панель администратора)
+CREATE INDEX idx_documents_upload_date_id ON documents (upload_date DESC, id DESC) WHERE status = 'ACTIVE';
+
+-- "Доступные мне": поиск прав доступа по получателю
+-- (уникальный индекс uk_document_recipient начинается с document_id и здесь не помогает)
+CREATE INDEX idx_document_shares_recipient_id ON document_shares (recipient_id);
+
+-- "Отправленные мной": порядок по дате отправки
+CREATE INDEX idx_document_shares_share_at_id ON document_shares (share_at DESC, id DESC);
@@ -0,0 +1,73 @@
+-- V6: Полнотекстовый поиск по имени файла, категории и тегам
+
+ALTER TABLE documents
+    ADD COLUMN search_vector tsvector;
+
+-- Словарь 'simple': без стемминга (имена файлов на разных языках), только приведение к нижнему регистру.
+-- Знаки препинания в имени файла заменяются пробелами: "report_2024-final.pdf" -> report, 2024, final, pdf
+CREATE FUNCTION documents_search_vector(p_file_name TEXT, p_category TEXT, p_tags TEXT)
+    RETURNS tsvector
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT setweight(to_tsvector('simple', regexp_replace(coalesce(p_file_name, ''), '[^[:alnum:]]+', ' ', 'g')), 'A')
+           || setweight(to_tsvector('simple', coalesce(p_category, '')), 'B')
+           || setweight(to_tsvector('simple', coalesce(p_tags, '')), 'C')
+$$;
+
+-- Вектор пересчитывается при вставке документа и изменении имени или категории
+CREATE FUNCTION documents_refresh_search_vector()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    NEW.search_vector := documents_search_vector(NEW.file_name, NEW.category,
+                                                 (SELECT string_agg(t.tag, ' ')
+                                                  FROM document_tags t
+                                                  WHERE t.document_id = NEW.id));
+    RETURN NEW;
+END;
+$$;
+
+CREATE TRIGGER trg_documents_search_vector
+    BEFORE INSERT OR UPDATE OF file_name, category
+    ON documents
+    FOR EACH ROW
+EXECUTE FUNCTION documents_refresh_search_vector();
+
+-- Теги хранятся в отдельной таблице и пишутся после строки документа, поэтому при их изменении
+-- вектор документа обновляется отдельно
+CREATE FUNCTION document_tags_refresh_search_vector()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    doc_id BIGINT := CASE WHEN TG_OP = 'DELETE' THEN OLD.document_id ELSE NEW.document_id END;
+BEGIN
+    UPDATE documents d
+    SET search_vector = documents_search_vector(d.file_name, d.category,
+                                                (SELECT string_agg(t.tag, ' ')
+                                                 FROM document_tags t
+                                                 WHERE t.document_id = d.id))
+    WHERE d.id = doc_id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_document_tags_search_vector
+    AFTER INSERT OR UPDATE OR DELETE
+    ON document_tags
+    FOR EACH ROW
+EXECUTE FUNCTION document_tags_refresh_search_vector();
+
+-- Заполняем вектор для уже загруженных документов
+UPDATE documents d
+SET search_vector = documents_search_vector(d.file_name, d.category,
+                                            (SELECT string_agg(t.tag, ' ')
+                                             FROM document_tags t
+                                             WHERE t.document_id = d.id));
+
+CREATE INDEX idx_documents_search_vector ON documents USING GIN (search_vector);
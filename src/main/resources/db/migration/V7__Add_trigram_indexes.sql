@@ -0,0 +1,9 @@
+-- V7: Триграммные индексы для поиска подстроки (LIKE '%...%') без учета регистра
+
+-- Расширение входит в стандартную поставку PostgreSQL (contrib)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Индексы построены по тем же выражениям, что и условия в DocumentSpecification: lower(column) LIKE ?
+CREATE INDEX idx_documents_file_name_trgm ON documents USING GIN (lower(file_name) gin_trgm_ops);
+
+CREATE INDEX idx_users_username_trgm ON users USING GIN (lower(username) gin_trgm_ops);
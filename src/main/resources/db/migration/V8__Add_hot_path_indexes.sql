@@ -0,0 +1,29 @@
+-- V8: Индексы для частых запросов (списки, фильтры, теги, расшаренные документы)
+--
+-- CREATE INDEX CONCURRENTLY не блокирует запись в таблицу, но не может выполняться в транзакции,
+-- поэтому миграция запускается без нее (см. V8__Add_hot_path_indexes.sql.conf).
+-- Если построение прервется, останется невалидный индекс: его нужно удалить (DROP INDEX CONCURRENTLY)
+-- и повторить миграцию (flyway repair + migrate).
+
+-- Документы владельца и фильтр владелец + категория; заодно индекс для внешнего ключа user_id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_user_id_category
+    ON documents (user_id, category);
+
+-- Фильтр по категории в панели администратора с сортировкой от новых к старым
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_category_upload_date_id
+    ON documents (category, upload_date DESC, id DESC);
+
+-- Теги документа: загрузка тегов страницы, подзапрос фильтра по тегам, внешний ключ
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_tags_document_id_tag
+    ON document_tags (document_id, tag);
+
+-- Фильтр по тегу: документы с заданным тегом
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_tags_tag_document_id
+    ON document_tags (tag, document_id);
+
+-- "Доступные мне": права доступа получателя вместе с id документа (index-only scan для EXISTS и join)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_document_shares_recipient_id_document_id
+    ON document_shares (recipient_id, document_id);
+
+-- Индекс из V5 покрывается предыдущим
+DROP INDEX CONCURRENTLY IF EXISTS idx_document_shares_recipient_id;
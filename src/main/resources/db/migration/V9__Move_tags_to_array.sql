@@ -0,0 +1,37 @@
+-- V9: Теги документа хранятся массивом text[] в строке документа вместо таблицы document_tags
+
+ALTER TABLE documents
+    ADD COLUMN tags TEXT[] NOT NULL DEFAULT '{}';
+
+-- Поисковый вектор (V6) теперь строится из колонки tags, отдельный триггер на document_tags не нужен
+DROP TRIGGER trg_document_tags_search_vector ON document_tags;
+DROP FUNCTION document_tags_refresh_search_vector();
+
+CREATE OR REPLACE FUNCTION documents_refresh_search_vector()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    NEW.search_vector := documents_search_vector(NEW.file_name, NEW.category, array_to_string(NEW.tags, ' '));
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER trg_documents_search_vector ON documents;
+CREATE TRIGGER trg_documents_search_vector
+    BEFORE INSERT OR UPDATE OF file_name, category, tags
+    ON documents
+    FOR EACH ROW
+EXECUTE FUNCTION documents_refresh_search_vector();
+
+-- Переносим теги; триггер выше заодно пересчитывает поисковый вектор
+UPDATE documents d
+SET tags = t.tags
+FROM (SELECT document_id, array_agg(DISTINCT tag ORDER BY tag) AS tags
+      FROM document_tags
+      WHERE tag IS NOT NULL
+      GROUP BY document_id) t
+WHERE t.document_id = d.id;
+
+DROP TABLE document_tags;
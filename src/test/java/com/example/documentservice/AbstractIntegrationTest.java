@@ -0,0 +1,42 @@
+package com.example.documentservice;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Основа интеграционных тестов: приложение целиком поверх PostgreSQL и MinIO в контейнерах.
+ * <p>
+ * Контейнеры общие для всех тестовых классов и запускаются один раз, при создании первого контекста.
+ * Без Docker тесты пропускаются. Фоновые задачи и сверка хранилища выключены, чтобы не менять
+ * данные и не добавлять запросы во время проверок.
+ */
+@SpringBootTest(properties = {
+        "jobs.enabled=false",
+        "storage.reconcile.enabled=false",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.orm.jdbc.bind=INFO"
+})
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class AbstractIntegrationTest {
+
+    protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    protected static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2023-09-04T19-57-37Z");
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        POSTGRES.start();
+        MINIO.start();
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("minio.url", MINIO::getS3URL);
+        registry.add("minio.access.key", MINIO::getUserName);
+        registry.add("minio.secret.key", MINIO::getPassword);
+    }
+}
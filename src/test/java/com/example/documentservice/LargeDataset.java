@@ -0,0 +1,86 @@
+package com.example.documentservice;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Большой набор данных для проверки планов запросов: на маленьких таблицах PostgreSQL
+ * выбирает последовательное чтение, даже когда подходящий индекс есть.
+ * <p>
+ * Данные создаются один раз на базу (повторный вызов ничего не делает), после заполнения
+ * собирается статистика. Имена пользователей и файлов содержат md5, чтобы подстроки
+ * встречались редко, как в настоящих данных.
+ */
+public final class LargeDataset {
+
+    public static final int USERS = 20_000;
+    public static final int DOCUMENTS = 200_000;
+    public static final int CATEGORIES = 500;
+    public static final int TAGS = 2_000;
+
+    public static final String USERNAME_PREFIX = "bulk-";
+
+    private LargeDataset() {
+    }
+
+    public static synchronized void ensureSeeded(JdbcTemplate jdbcTemplate) {
+        Integer seeded = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM users WHERE username = ?", Integer.class, username(1));
+        if (seeded != null && seeded > 0) {
+            return;
+        }
+        jdbcTemplate.update("""
+                INSERT INTO users (username, password, email, role)
+                SELECT ? || n || '-' || substr(md5(n::text), 1, 12), 'x', 'bulk-' || n || '@example.com', 'ROLE_USER'
+                FROM generate_series(1, ?) n""", USERNAME_PREFIX, USERS);
+        // Документы распределены по пользователям равномерно; 1% - незавершенные загрузки (PENDING)
+        jdbcTemplate.update("""
+                INSERT INTO documents (file_name, storage_file_name, file_type, size, category, upload_date, user_id,
+                                       tags, status)
+                SELECT 'report-' || substr(md5('file' || n), 1, 16) || '.pdf', 'bulk/' || n, 'application/pdf', n,
+                       'category-' || n % ?, timestamp '2026-01-01' + make_interval(secs => n),
+                       u.id, ARRAY['tag-' || n % ?, 'tag-' || (n * 7) % ?],
+                       CASE WHEN n % 100 = 0 THEN 'PENDING' ELSE 'ACTIVE' END
+                FROM generate_series(1, ?) n
+                JOIN users u ON u.username = ? || (n % ? + 1) || '-' || substr(md5((n % ? + 1)::text), 1, 12)""",
+                CATEGORIES, TAGS, TAGS, DOCUMENTS, USERNAME_PREFIX, USERS, USERS);
+        // Каждый второй документ расшарен одному пользователю
+        jdbcTemplate.update("""
+                INSERT INTO document_shares (document_id, recipient_id, share_at)
+                SELECT d.id, u.id, d.upload_date + interval '1 hour'
+                FROM documents d
+                JOIN users u ON u.username = ? || (d.size * 7 % ? + 1) || '-' || substr(md5((d.size * 7 % ? + 1)::text), 1, 12)
+                WHERE d.storage_file_name LIKE 'bulk/%' AND d.size % 2 = 0""", USERNAME_PREFIX, USERS, USERS);
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE documents");
+        jdbcTemplate.execute("ANALYZE document_shares");
+    }
+
+    /**
+     * Имя пользователя из набора.
+     */
+    public static String username(int n) {
+        return USERNAME_PREFIX + n + "-" + md5Prefix(Integer.toString(n), 12);
+    }
+
+    /**
+     * Имя файла документа из набора.
+     */
+    public static String fileName(int n) {
+        return "report-" + md5Prefix("file" + n, 16) + ".pdf";
+    }
+
+    private static String md5Prefix(String value, int length) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
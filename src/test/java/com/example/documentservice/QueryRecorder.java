@@ -0,0 +1,185 @@
+package com.example.documentservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Запоминает SELECT-запросы приложения вместе со значениями параметров, чтобы тест мог получить
+ * их планы через EXPLAIN. Подключается в тест через {@code @Import(QueryRecorder.class)}.
+ * <p>
+ * Записываются только запросы потока, вызвавшего {@link #record(Runnable)}.
+ */
+public class QueryRecorder implements BeanPostProcessor {
+
+    private final ThreadLocal<List<RecordedQuery>> recording = new ThreadLocal<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DataSource dataSource;
+
+    /**
+     * Запрос и вызовы set* для его параметров в порядке номеров.
+     */
+    public record RecordedQuery(String sql, List<Binding> bindings) {
+    }
+
+    public record Binding(Method method, Object[] args) {
+    }
+
+    /**
+     * Узел плана: тип, таблица и индекс (если есть).
+     */
+    public record PlanNode(String nodeType, String relationName, String indexName) {
+    }
+
+    /**
+     * План запроса и время его выполнения.
+     */
+    public record Plan(RecordedQuery query, List<PlanNode> nodes, double executionTimeMillis) {
+
+        public List<String> seqScannedTables() {
+            return nodes.stream()
+                    .filter(node -> "Seq Scan".equals(node.nodeType()))
+                    .map(PlanNode::relationName)
+                    .toList();
+        }
+
+        public boolean usesIndex(String indexName) {
+            return nodes.stream().anyMatch(node -> indexName.equals(node.indexName()));
+        }
+
+        @Override
+        public String toString() {
+            return query.sql() + " -> " + nodes;
+        }
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource target && !(bean instanceof RecordingDataSource)) {
+            RecordingDataSource recordingDataSource = new RecordingDataSource(target);
+            this.dataSource = recordingDataSource;
+            return recordingDataSource;
+        }
+        return bean;
+    }
+
+    /**
+     * Выполняет действие и возвращает выполненные в нем SELECT-запросы.
+     */
+    public List<RecordedQuery> record(Runnable action) {
+        List<RecordedQuery> queries = new ArrayList<>();
+        recording.set(queries);
+        try {
+            action.run();
+        } finally {
+            recording.remove();
+        }
+        return queries;
+    }
+
+    /**
+     * Выполняет запрос под EXPLAIN ANALYZE с теми же параметрами.
+     */
+    public Plan explain(RecordedQuery query) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN (ANALYZE, FORMAT JSON) " + query.sql())) {
+            for (Binding binding : query.bindings()) {
+                binding.method().invoke(statement, binding.args());
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                JsonNode root = objectMapper.readTree(resultSet.getString(1)).get(0);
+                List<PlanNode> nodes = new ArrayList<>();
+                collect(root.get("Plan"), nodes);
+                return new Plan(query, nodes, root.path("Execution Time").asDouble());
+            }
+        } catch (ReflectiveOperationException | java.io.IOException e) {
+            throw new IllegalStateException("Cannot explain " + query.sql(), e);
+        }
+    }
+
+    private static void collect(JsonNode plan, List<PlanNode> nodes) {
+        nodes.add(new PlanNode(plan.path("Node Type").asText(),
+                plan.path("Relation Name").asText(null), plan.path("Index Name").asText(null)));
+        for (JsonNode child : plan.path("Plans")) {
+            collect(child, nodes);
+        }
+    }
+
+    private class RecordingDataSource extends DelegatingDataSource {
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return recordingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return recordingConnection(super.getConnection(username, password));
+        }
+    }
+
+    private Connection recordingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            List<RecordedQuery> queries = recording.get();
+            if (queries != null && "prepareStatement".equals(method.getName()) && isSelect((String) args[0])) {
+                return recordingStatement((PreparedStatement) result, (String) args[0], queries);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement recordingStatement(PreparedStatement statement, String sql, List<RecordedQuery> queries) {
+        Map<Integer, Binding> bindings = new TreeMap<>();
+        return proxy(PreparedStatement.class, statement, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bindings.put(index, new Binding(method, args.clone()));
+            } else if ("clearParameters".equals(name)) {
+                bindings.clear();
+            } else if ("executeQuery".equals(name) || "execute".equals(name)) {
+                queries.add(new RecordedQuery(sql, List.copyOf(bindings.values())));
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static boolean isSelect(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return statement.startsWith("select") || statement.startsWith("with");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.documentservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение пропускной способности скачивания и загрузки с платформенными и виртуальными потоками.
+ * <p>
+ * Приложение запускается дважды на одних и тех же контейнерах PostgreSQL и MinIO: с
+ * spring.threads.virtual.enabled=false и с true. В каждом режиме клиенты одновременно скачивают
+ * документ (кэш отключен, каждый запрос идет в MinIO) и загружают новые; результаты пишутся в лог.
+ * Число одновременных запросов больше server.tomcat.threads.max, чтобы было видно ограничение пула потоков.
+ * <p>
+ * Бенчмарк долгий и запускается только явно: {@code mvn test -Dtest=ThreadModeBenchmarkTest -Dbenchmark=true}.
+ */
+@Slf4j
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThreadModeBenchmarkTest {
+
+    private static final int TOMCAT_THREADS = 200;
+    private static final int CONCURRENCY = 800;
+    private static final int DOWNLOADS = 16_000;
+    private static final int UPLOADS = 2_000;
+    private static final int FILE_SIZE = 256 * 1024;
+    private static final int DB_POOL_SIZE = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final byte[] content = randomContent();
+    private final AtomicLong uploadCounter = new AtomicLong();
+
+    record Result(String mode, String operation, int requests, int errors, double seconds, long p50Millis,
+                  long p99Millis) {
+
+        double throughput() {
+            return requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %-9s %6d req, %4d errors, %8.1f req/s, p50 %5d ms, p99 %5d ms",
+                    mode, operation, requests, errors, throughput(), p50Millis, p99Millis);
+        }
+    }
+
+    @Test
+    void compareThreadModes() throws Exception {
+        List<Result> results = new ArrayList<>();
+        results.addAll(run(false));
+        results.addAll(run(true));
+
+        log.info("Thread mode benchmark ({} concurrent clients, {} Tomcat threads, {} DB connections):\n{}",
+                CONCURRENCY, TOMCAT_THREADS, DB_POOL_SIZE,
+                String.join("\n", results.stream().map(Result::toString).toList()));
+        assertThat(results).allSatisfy(result -> assertThat(result.errors()).as(result.toString()).isZero());
+    }
+
+    private List<Result> run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        // Аргументами командной строки: значения по умолчанию (SpringApplicationBuilder.properties)
+        // не перекрыли бы application.properties
+        String[] args = properties(virtualThreads).entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DocumentserviceApplication.class)
+                .run(args)) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            String token = login(baseUrl);
+            long documentId = upload(baseUrl, token);
+
+            // Прогрев: JIT, пул соединений с MinIO и БД
+            measure(mode, "warmup", DOWNLOADS / 10, () -> download(baseUrl, token, documentId));
+
+            List<Result> results = new ArrayList<>();
+            results.add(measure(mode, "download", DOWNLOADS, () -> download(baseUrl, token, documentId)));
+            results.add(measure(mode, "upload", UPLOADS, () -> upload(baseUrl, token)));
+            return results;
+        }
+    }
+
+    private static Map<String, Object> properties(boolean virtualThreads) {
+        AbstractIntegrationTest.POSTGRES.start();
+        AbstractIntegrationTest.MINIO.start();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", AbstractIntegrationTest.POSTGRES.getJdbcUrl());
+        properties.put("spring.datasource.username", AbstractIntegrationTest.POSTGRES.getUsername());
+        properties.put("spring.datasource.password", AbstractIntegrationTest.POSTGRES.getPassword());
+        properties.put("minio.url", AbstractIntegrationTest.MINIO.getS3URL());
+        properties.put("minio.access.key", AbstractIntegrationTest.MINIO.getUserName());
+        properties.put("minio.secret.key", AbstractIntegrationTest.MINIO.getPassword());
+        properties.put("spring.threads.virtual.enabled", virtualThreads);
+        properties.put("server.port", 0);
+        properties.put("server.tomcat.threads.max", TOMCAT_THREADS);
+        properties.put("server.tomcat.max-connections", CONCURRENCY * 2);
+        properties.put("server.tomcat.accept-count", CONCURRENCY);
+        properties.put("spring.datasource.hikari.maximum-pool-size", DB_POOL_SIZE);
+        properties.put("storage.cache.enabled", false);
+        properties.put("jobs.enabled", false);
+        properties.put("storage.reconcile.enabled", false);
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("logging.level.org.hibernate.SQL", "INFO");
+        properties.put("logging.level.org.hibernate.orm.jdbc.bind", "INFO");
+        return properties;
+    }
+
+    /**
+     * Выполняет запросы из CONCURRENCY клиентов одновременно.
+     */
+    private Result measure(String mode, String operation, int requests, Request request) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[requests];
+        long started = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                futures.add(clients.submit(() -> {
+                    for (int n = next.getAndIncrement(); n < requests; n = next.getAndIncrement()) {
+                        long requestStarted = System.nanoTime();
+                        try {
+                            request.run();
+                        } catch (Exception e) {
+                            if (errors.incrementAndGet() == 1) {
+                                log.warn("{} {} failed", mode, operation, e);
+                            }
+                        }
+                        latencies[n] = System.nanoTime() - requestStarted;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        Arrays.sort(latencies);
+        return new Result(mode, operation, requests, errors.get(), seconds,
+                latencies[requests / 2] / 1_000_000, latencies[requests * 99 / 100] / 1_000_000);
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+
+    private String login(String baseUrl) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"admin\"}"))
+                .build();
+        return objectMapper.readTree(send(request, HttpResponse.BodyHandlers.ofString())).get("token").asText();
+    }
+
+    private long upload(String baseUrl, String token) throws IOException, InterruptedException {
+        // Каждая загрузка со своим содержимым, иначе все они ссылались бы на одну запись storage_blobs
+        byte[] body = content.clone();
+        ByteBuffer.wrap(body).putLong(uploadCounter.incrementAndGet());
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents/stream"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/octet-stream")
+                .header("X-File-Name", "benchmark.bin")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        JsonNode document = objectMapper.readTree(send(request, HttpResponse.BodyHandlers.ofString()));
+        return document.get("id").asLong();
+    }
+
+    private void download(String baseUrl, String token, long documentId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents/" + documentId + "/download"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        byte[] body = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (body.length != content.length) {
+            throw new IllegalStateException("Downloaded " + body.length + " bytes instead of " + content.length);
+        }
+    }
+
+    private <T> T send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        HttpResponse<T> response = httpClient.send(request, bodyHandler);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static byte[] randomContent() {
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.documentservice.controller;
+
+import com.example.documentservice.dto.FileDownloadDto;
+import com.example.documentservice.service.FileStorageService;
+import com.example.documentservice.service.StorageObjectResource;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileDownloadResponseFactoryTest {
+
+    private final FileDownloadResponseFactory factory = new FileDownloadResponseFactory();
+
+    @Test
+    void overlappingAndAdjacentRangesAreMerged() {
+        List<long[]> ranges = FileDownloadResponseFactory.satisfiableRanges(
+                HttpRange.parseRanges("bytes=50-59, 0-9, 5-19, 20-29, 100-"), 120);
+
+        assertThat(ranges).containsExactly(new long[]{0, 29}, new long[]{50, 59}, new long[]{100, 119});
+    }
+
+    @Test
+    void unsatisfiableRangesAreDropped() {
+        assertThat(FileDownloadResponseFactory.satisfiableRanges(HttpRange.parseRanges("bytes=200-300"), 100)).isEmpty();
+        assertThat(FileDownloadResponseFactory.satisfiableRanges(HttpRange.parseRanges("bytes=200-300, -10"), 100))
+                .containsExactly(new long[]{90, 99});
+    }
+
+    @Test
+    void tooManyRangesFallBackToFullResponse() {
+        String header = IntStream.range(0, FileDownloadResponseFactory.MAX_RANGES + 1)
+                .mapToObj(i -> (i * 10) + "-" + (i * 10 + 1))
+                .collect(Collectors.joining(",", "bytes=", ""));
+        FileStorageService storage = mock(FileStorageService.class);
+        when(storage.downloadFile("key")).thenReturn(new ByteArrayInputStream(new byte[1000]));
+
+        ResponseEntity<Resource> response = factory.create(download(storage, 1000), rangeHeaders(header));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(1000);
+    }
+
+    @Test
+    void missingObjectFailsBeforeResponseIsReturned() {
+        FileStorageService storage = mock(FileStorageService.class);
+        when(storage.downloadFile("key")).thenThrow(new RuntimeException("NoSuchKey"));
+        when(storage.downloadFile("key", 0, 10)).thenThrow(new RuntimeException("NoSuchKey"));
+
+        assertThatThrownBy(() -> factory.create(download(storage, 1000), new HttpHeaders()))
+                .hasMessage("NoSuchKey");
+        assertThatThrownBy(() -> factory.create(download(storage, 1000), rangeHeaders("bytes=0-9")))
+                .hasMessage("NoSuchKey");
+        assertThatThrownBy(() -> factory.create(download(storage, 1000), rangeHeaders("bytes=0-9,20-29")))
+                .hasMessage("NoSuchKey");
+    }
+
+    private static FileDownloadDto download(FileStorageService storage, long size) {
+        return new FileDownloadDto("file.bin", new StorageObjectResource(storage, "key", size),
+                MediaType.APPLICATION_OCTET_STREAM, size, Instant.parse("2024-01-01T00:00:00Z"), "etag", null);
+    }
+
+    private static HttpHeaders rangeHeaders(String range) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, range);
+        return headers;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.documentservice.dto;
+
+import com.example.documentservice.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageCursorTest {
+
+    @Test
+    void encodedCursorDecodesToSamePosition() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000), 42L);
+
+        assertThat(PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new PageCursor(LocalDateTime.of(2024, 3, 1, 23, 59, 59), Long.MAX_VALUE).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void missingTokenMeansFirstPage() {
+        assertThat(PageCursor.decode(null)).isNull();
+        assertThat(PageCursor.decode(" ")).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not base64!", "bm8tc2VwYXJhdG9y", "MjAyNC0wMy0wMXwx", "fDQy"})
+    void damagedTokenIsRejected(String token) {
+        assertThatThrownBy(() -> PageCursor.decode(token)).isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void nonNumericIdIsRejected() {
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2024-03-01T12:00|abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> PageCursor.decode(token)).isInstanceOf(InvalidCursorException.class);
+    }
+}
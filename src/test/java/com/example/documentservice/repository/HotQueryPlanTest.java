@@ -0,0 +1,125 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.AbstractIntegrationTest;
+import com.example.documentservice.LargeDataset;
+import com.example.documentservice.QueryRecorder;
+import com.example.documentservice.QueryRecorder.Plan;
+import com.example.documentservice.QueryRecorder.RecordedQuery;
+import com.example.documentservice.dto.CursorPage;
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.dto.TagMatchMode;
+import com.example.documentservice.entity.DocumentStatus;
+import com.example.documentservice.entity.User;
+import com.example.documentservice.service.DocumentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Регрессия планов: запросы горячих путей (списки владельца, фильтры по категории и тегам,
+ * расшаренные документы, поиск) на большом наборе данных не должны читать большие таблицы целиком.
+ * Каждый SQL-запрос, выполненный сервисом, повторяется под EXPLAIN ANALYZE с теми же параметрами.
+ * <p>
+ * Полные списки администратора без фильтров сюда не входят: их count читает все строки по определению.
+ */
+@Slf4j
+@Import(QueryRecorder.class)
+class HotQueryPlanTest extends AbstractIntegrationTest {
+
+    // users намного меньше: хеш-соединение с ней по всей таблице - нормальный выбор планировщика
+    private static final List<String> LARGE_TABLES = List.of("documents", "document_shares");
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QueryRecorder queryRecorder;
+
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        LargeDataset.ensureSeeded(jdbcTemplate);
+    }
+
+    @TestFactory
+    Stream<DynamicTest> hotQueriesDoNotScanLargeTables() {
+        User owner = user(77);
+        // Владелец документа 4242 (см. LargeDataset) и начало md5 в его имени
+        User searcher = user(4243);
+        String fileNameWord = LargeDataset.fileName(4242).substring(7, 13);
+        PageRequest page = PageRequest.of(0, 20);
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("owner listing", () ->
+                documentService.getAllUserDocuments(owner, null, null, null, null, page));
+        queries.put("owner listing by cursor", () -> {
+            CursorPage<DocumentDto> first = documentService.getAllUserDocuments(owner, null, null, null, null, null, 3);
+            documentService.getAllUserDocuments(owner, null, null, null, null, first.nextCursor(), 3);
+        });
+        queries.put("owner category filter", () ->
+                documentService.getAllUserDocuments(owner, "category-77", null, null, null, page));
+        queries.put("category filter", () ->
+                documentService.getAllDocumentsForAdmin(page, "category-42", null, null, null, null));
+        queries.put("category filter by cursor", () -> {
+            CursorPage<DocumentDto> first = documentService.getAllDocumentsForAdmin(null, 20, "category-42",
+                    null, null, null, null);
+            documentService.getAllDocumentsForAdmin(first.nextCursor(), 20, "category-42", null, null, null, null);
+        });
+        queries.put("tag filter (any)", () ->
+                documentService.getAllDocumentsForAdmin(page, null, Set.of("tag-17", "tag-18"), TagMatchMode.ANY,
+                        null, null));
+        queries.put("tag filter (all)", () ->
+                documentService.getAllDocumentsForAdmin(page, null, Set.of("tag-17", "tag-119"), TagMatchMode.ALL,
+                        null, null));
+        queries.put("owner facets", () ->
+                documentService.getUserDocumentFacets(owner, null, null, null, null));
+        queries.put("shared with me", () ->
+                documentService.getSharedWithMe(owner, page));
+        queries.put("shared with me by cursor", () ->
+                documentService.getSharedWithMe(owner, null, 20));
+        queries.put("sent by me", () ->
+                documentService.getSentByMe(owner, page));
+        queries.put("sent by me by cursor", () ->
+                documentService.getSentByMe(owner, null, 20));
+        queries.put("full-text search", () ->
+                documentService.searchDocuments(searcher, fileNameWord, page));
+        queries.put("expired pending uploads", () ->
+                documentRepository.findIdsByStatusAndUploadDateBefore(DocumentStatus.PENDING,
+                        LocalDateTime.of(2026, 1, 1, 0, 10), PageRequest.of(0, 100)));
+        queries.put("reconciler orphan check", () ->
+                documentRepository.existsByStorageFileNameAndStatus("bulk/4200", DocumentStatus.PENDING));
+
+        return queries.entrySet().stream().map(query -> DynamicTest.dynamicTest(query.getKey(), () -> {
+            List<RecordedQuery> recorded = queryRecorder.record(query.getValue());
+            assertThat(recorded).as("recorded SQL").isNotEmpty();
+            for (RecordedQuery sql : recorded) {
+                Plan plan = queryRecorder.explain(sql);
+                log.info("{}: {} ms: {}", query.getKey(), plan.executionTimeMillis(), plan);
+                assertThat(plan.seqScannedTables()).as(plan.toString()).doesNotContainAnyElementsOf(LARGE_TABLES);
+            }
+        }));
+    }
+
+    private User user(int n) {
+        return userRepository.findByUsername(LargeDataset.username(n)).orElseThrow();
+    }
+}
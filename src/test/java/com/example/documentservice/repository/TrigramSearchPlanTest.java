@@ -0,0 +1,96 @@
+package com.example.documentservice.repository;
+
+import com.example.documentservice.AbstractIntegrationTest;
+import com.example.documentservice.LargeDataset;
+import com.example.documentservice.QueryRecorder;
+import com.example.documentservice.QueryRecorder.Plan;
+import com.example.documentservice.QueryRecorder.RecordedQuery;
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.service.DocumentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Фильтры администратора по подстроке имени пользователя и имени файла на большом наборе данных
+ * должны идти через триграммные индексы (V7), а не читать таблицы целиком.
+ * Время выполнения каждого запроса пишется в лог.
+ */
+@Slf4j
+@Import(QueryRecorder.class)
+@TestPropertySource(properties = "search.mode=LIKE")
+class TrigramSearchPlanTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private QueryRecorder queryRecorder;
+
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        LargeDataset.ensureSeeded(jdbcTemplate);
+    }
+
+    @Test
+    void usernameFilterUsesTrigramIndex() throws SQLException {
+        String username = LargeDataset.username(1234);
+        // Часть md5 из середины имени, в другом регистре
+        String fragment = username.substring(username.length() - 10, username.length() - 2).toUpperCase(Locale.ROOT);
+
+        List<Plan> plans = explain(() -> documentService.getAllDocumentsForAdmin(
+                PageRequest.of(0, 20), null, null, null, null, fragment), page ->
+                assertThat(page.getContent()).isNotEmpty()
+                        .allSatisfy(document -> assertThat(document.getOwnerUsername()).isEqualTo(username)));
+
+        assertThat(plans).anySatisfy(plan -> assertThat(plan.usesIndex("idx_users_username_trgm")).isTrue());
+        assertThat(plans).allSatisfy(plan -> assertThat(plan.seqScannedTables()).as(plan.toString())
+                .doesNotContain("users", "documents"));
+    }
+
+    @Test
+    void fileNameFilterUsesTrigramIndex() throws SQLException {
+        String fileName = LargeDataset.fileName(4242);
+        String fragment = fileName.substring(9, 17).toUpperCase(Locale.ROOT);
+
+        List<Plan> plans = explain(() -> documentService.getAllDocumentsForAdmin(
+                PageRequest.of(0, 20), null, null, null, fragment, null), page ->
+                assertThat(page.getContent()).extracting(DocumentDto::getFileName).contains(fileName));
+
+        assertThat(plans).anySatisfy(plan -> assertThat(plan.usesIndex("idx_documents_file_name_trgm")).isTrue());
+        assertThat(plans).allSatisfy(plan -> assertThat(plan.seqScannedTables()).as(plan.toString())
+                .doesNotContain("documents"));
+    }
+
+    private List<Plan> explain(Supplier<Page<DocumentDto>> listing,
+                               Consumer<Page<DocumentDto>> check) throws SQLException {
+        AtomicReference<Page<DocumentDto>> page = new AtomicReference<>();
+        List<RecordedQuery> queries = queryRecorder.record(() -> page.set(listing.get()));
+        check.accept(page.get());
+
+        assertThat(queries).isNotEmpty();
+        List<Plan> plans = new ArrayList<>();
+        for (RecordedQuery query : queries) {
+            Plan plan = queryRecorder.explain(query);
+            log.info("{} ms: {}", plan.executionTimeMillis(), plan);
+            plans.add(plan);
+        }
+        return plans;
+    }
+}
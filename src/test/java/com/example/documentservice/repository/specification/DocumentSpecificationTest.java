@@ -0,0 +1,63 @@
+package com.example.documentservice.repository.specification;
+
+import com.example.documentservice.entity.Document;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentSpecificationTest {
+
+    @Test
+    void containsPatternEscapesWildcards() {
+        assertThat(DocumentSpecification.containsPattern("100%_done")).isEqualTo("%100\\%\\_done%");
+    }
+
+    @Test
+    void containsPatternEscapesEscapeCharacterFirst() {
+        // Обратная косая черта удваивается до экранирования % и _, иначе \% превратилось бы в \\%
+        assertThat(DocumentSpecification.containsPattern("a\\%")).isEqualTo("%a\\\\\\%%");
+    }
+
+    @Test
+    void containsPatternIsLowerCase() {
+        assertThat(DocumentSpecification.containsPattern("Отчет.PDF")).isEqualTo("%отчет.pdf%");
+    }
+
+    @Test
+    void prefixTsQueryKeepsOnlyWords() {
+        assertThat(DocumentSpecification.toPrefixTsQuery("Отч 2024")).isEqualTo("отч:* & 2024:*");
+        assertThat(DocumentSpecification.toPrefixTsQuery("a&b | !(c):*")).isEqualTo("a:* & b:* & c:*");
+    }
+
+    @Test
+    void prefixTsQueryWithoutWordsIsNull() {
+        assertThat(DocumentSpecification.toPrefixTsQuery(null)).isNull();
+        assertThat(DocumentSpecification.toPrefixTsQuery("  ")).isNull();
+        assertThat(DocumentSpecification.toPrefixTsQuery("&|!():*")).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullTextQueryIsBoundAsParameter() {
+        HibernateCriteriaBuilder criteriaBuilder = mock(HibernateCriteriaBuilder.class, RETURNS_MOCKS);
+        CriteriaQuery<Document> query = mock(CriteriaQuery.class, RETURNS_MOCKS);
+        Root<Document> root = mock(Root.class, RETURNS_MOCKS);
+        when(query.getResultType()).thenReturn(Document.class);
+
+        DocumentSpecification.byFullText("report").toPredicate(root, query, criteriaBuilder);
+
+        // Условие и сортировка: запрос пользователя ни разу не попадает в текст SQL
+        verify(criteriaBuilder, times(2)).value("report:*");
+        verify(criteriaBuilder, never()).literal(any());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.AbstractIntegrationTest;
+import com.example.documentservice.dto.BulkUploadResponse;
+import com.example.documentservice.dto.BulkUploadResultDto;
+import com.example.documentservice.entity.User;
+import com.example.documentservice.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Документы из архива сохраняются пачками JDBC: число запросов на пачку не зависит от числа файлов в ней.
+ * Раньше ссылка на объект регистрировалась нативным запросом перед каждым документом, и каждый такой
+ * запрос сбрасывал вставки предыдущего документа по одной.
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "storage.upload.bulk.batch-size=50"
+})
+class ArchiveUploadBatchingTest extends AbstractIntegrationTest {
+
+    private static final int FILES = 40;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void savesArchiveBatchWithConstantNumberOfStatements() throws IOException {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, password, email, role)
+                VALUES ('archive-batching', 'x', 'archive-batching@example.com', 'ROLE_USER')
+                ON CONFLICT DO NOTHING""");
+        User owner = userRepository.findByUsername("archive-batching").orElseThrow();
+        // Содержимое уникально для запуска, последний файл повторяет первый
+        String run = UUID.randomUUID().toString();
+        byte[] archive = archive(run);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        BulkUploadResponse response = documentService.uploadDocumentArchive(
+                new ByteArrayInputStream(archive), "archive", Set.of("batch"), owner);
+
+        assertThat(response.getUploaded()).isEqualTo(FILES + 1);
+        // Пользователь, регистрация всех объектов, удаление лишней копии, ключи документов и задач,
+        // пачка вставок документов и пачка вставок задач. По запросу на файл было бы больше сотни
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(9);
+
+        List<BulkUploadResultDto> files = response.getFiles();
+        Long firstId = files.get(0).getDocument().getId();
+        Long duplicateId = files.get(FILES).getDocument().getId();
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT b.ref_count FROM documents d JOIN storage_blobs b ON b.id = d.blob_id
+                WHERE d.id = ? AND d.blob_id = (SELECT blob_id FROM documents WHERE id = ?)""",
+                Integer.class, firstId, duplicateId)).isEqualTo(2);
+    }
+
+    private static byte[] archive(String run) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < FILES; i++) {
+                zip.putNextEntry(new ZipEntry("files/file-" + i + ".txt"));
+                zip.write((run + " file " + i).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("files/copy-of-file-0.txt"));
+            zip.write((run + " file 0").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.documentservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CachingFileStorageServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void clearsOnlyItsOwnSubdirectory() throws Exception {
+        Path foreign = Files.writeString(directory.resolve("notes.txt"), "keep me");
+        Path objects = CachingFileStorageService.prepareDirectory(directory);
+        Path stale = Files.writeString(objects.resolve("stale.bin"), "old");
+
+        assertThat(CachingFileStorageService.prepareDirectory(directory)).isEqualTo(objects);
+
+        assertThat(stale).doesNotExist();
+        assertThat(objects.resolve(CachingFileStorageService.MARKER_FILE_NAME)).isRegularFile();
+        assertThat(foreign).hasContent("keep me");
+    }
+
+    @Test
+    void createsDirectoryAccessibleOnlyToOwner() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        Path objects = CachingFileStorageService.prepareDirectory(directory.resolve("cache"));
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(objects))).isEqualTo("rwx------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(
+                objects.resolve(CachingFileStorageService.MARKER_FILE_NAME)))).isEqualTo("rw-------");
+    }
+
+    @Test
+    void refusesToClearDirectoryWithoutMarker() throws Exception {
+        Path objects = Files.createDirectories(directory.resolve("objects"));
+        Path data = Files.writeString(objects.resolve("data.bin"), "not ours");
+
+        assertThatThrownBy(() -> CachingFileStorageService.prepareDirectory(directory))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(data).hasContent("not ours");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.AbstractIntegrationTest;
+import com.example.documentservice.dto.CursorPage;
+import com.example.documentservice.dto.DocumentDto;
+import com.example.documentservice.dto.TagMatchMode;
+import com.example.documentservice.entity.User;
+import com.example.documentservice.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов на страницу списка не должно зависеть от числа строк:
+ * раньше владелец и теги догружались отдельным select на каждый документ.
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class DocumentListingQueryCountTest extends AbstractIntegrationTest {
+
+    private static final int OWNERS = 5;
+    private static final int DOCUMENTS_PER_OWNER = 60;
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, password, email, role)
+                SELECT 'query-count-' || n, 'x', 'query-count-' || n || '@example.com', 'ROLE_USER'
+                FROM generate_series(1, ?) n
+                ON CONFLICT DO NOTHING""", OWNERS);
+        jdbcTemplate.update("""
+                INSERT INTO documents (file_name, storage_file_name, file_type, size, category, upload_date, user_id, tags)
+                SELECT 'file-' || n || '.txt', 'query-count-' || u.id || '-' || n, 'text/plain', n, 'category-' || n % 3,
+                       now() - make_interval(mins => n), u.id, ARRAY['tag-' || n % 4, 'tag-' || n % 7]
+                FROM users u, generate_series(1, ?) n
+                WHERE u.username LIKE 'query-count-%'
+                  AND NOT EXISTS (SELECT 1 FROM documents d WHERE d.user_id = u.id)""", DOCUMENTS_PER_OWNER);
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void ownerPageUsesRowsAndCountQueriesOnly() {
+        User owner = userRepository.findByUsername("query-count-1").orElseThrow();
+        statistics.clear();
+
+        Page<DocumentDto> page = documentService.getAllUserDocuments(owner, null, null, null, null,
+                PageRequest.of(0, PAGE_SIZE));
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE)
+                .allSatisfy(document -> {
+                    assertThat(document.getOwnerUsername()).isEqualTo("query-count-1");
+                    assertThat(document.getTags()).isNotEmpty();
+                });
+        assertThat(page.getTotalElements()).isEqualTo(DOCUMENTS_PER_OWNER);
+        // Строки страницы вместе с владельцем и тегами + count
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void adminPageDoesNotGrowWithRows() {
+        Page<DocumentDto> page = documentService.getAllDocumentsForAdmin(PageRequest.of(0, PAGE_SIZE),
+                null, Set.of("tag-1"), TagMatchMode.ANY, null, "query-count-");
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE)
+                .allSatisfy(document -> assertThat(document.getOwnerUsername()).startsWith("query-count-"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void cursorPageRunsSingleQuery() {
+        User owner = userRepository.findByUsername("query-count-2").orElseThrow();
+        statistics.clear();
+
+        CursorPage<DocumentDto> page = documentService.getAllUserDocuments(owner, "category-1", null, null, null,
+                null, PAGE_SIZE);
+
+        assertThat(page.content()).isNotEmpty()
+                .allSatisfy(document -> assertThat(document.getCategory()).isEqualTo("category-1"));
+        // Без count: следующая страница определяется по лишней строке
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.documentservice.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки JWT на один запрос.
+ * <ul>
+ *     <li>{@code previous} - как было: фильтр и isTokenValid разбирали токен три раза,
+ *     каждый раз заново декодируя ключ и создавая парсер;</li>
+ *     <li>{@code singleParse} - один разбор готовым парсером (первый запрос с токеном, кэш не помогает);</li>
+ *     <li>{@code cachedClaims} - повторный запрос с тем же токеном: SHA-256 токена и поиск в кэше.</li>
+ * </ul>
+ * Запуск описан в README (раздел Benchmarks).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET =
+            "yXh6jK7P+93Tg7FZ3aYB5kS9D7tD6qxqRnVXbprkCkVq0uWmRhyj9zU6g7bQn4DJ4j8J8h3R8l6QkW5cHkqz9w==";
+
+    private JwtServiceImpl jwtService;
+    private JwtParser jwtParser;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtServiceImpl(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "jwtSigningKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxSize", 10_000L);
+        jwtService.init();
+        // Парсер, который сервис создал при старте: разбор без кэша, как при первом запросе с токеном
+        jwtParser = (JwtParser) ReflectionTestUtils.getField(jwtService, "jwtParser");
+        user = User.withUsername("alice").password("x").authorities("ROLE_USER").build();
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean previous() {
+        // JwtAuthenticationFilter: extractUserName
+        String username = parseWithNewKey(token).getSubject();
+        // isTokenValid: extractUserName и extractExpiration
+        boolean sameUser = parseWithNewKey(token).getSubject().equals(user.getUsername());
+        boolean expired = parseWithNewKey(token).getExpiration().before(new Date());
+        return username != null && sameUser && !expired;
+    }
+
+    @Benchmark
+    public boolean singleParse() {
+        Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+        return claims.getSubject() != null && jwtService.isTokenValid(claims, user);
+    }
+
+    @Benchmark
+    public boolean cachedClaims() {
+        Claims claims = jwtService.extractAllClaims(token);
+        return claims.getSubject() != null && jwtService.isTokenValid(claims, user);
+    }
+
+    private static Claims parseWithNewKey(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.AbstractIntegrationTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельная загрузка в настоящий MinIO: целостность объекта и пропускная способность
+ * по сравнению с последовательной загрузкой SDK (putObject), которая использовалась раньше.
+ */
+@Slf4j
+class ParallelMultipartUploaderTest extends AbstractIntegrationTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioAsyncClient minioAsyncClient;
+
+    @Value("${minio.bucket.name}")
+    private String bucketName;
+
+    @Test
+    void uploadsStreamOfUnknownSizeIntact() throws Exception {
+        ParallelMultipartUploader uploader = uploader(5, 4);
+        long size = 23 * MB + 12345;
+        GeneratedContent content = new GeneratedContent(size, 1);
+
+        uploader.upload(content.stream(), -1, "application/octet-stream", "parallel-test/unknown-size");
+
+        assertThat(minioClient.statObject(StatObjectArgs.builder()
+                .bucket(bucketName).object("parallel-test/unknown-size").build()).size()).isEqualTo(size);
+        assertThat(downloadSha256("parallel-test/unknown-size")).isEqualTo(content.sha256());
+        remove("parallel-test/unknown-size");
+    }
+
+    @Test
+    void uploadsSmallStreamOfUnknownSizeInSingleRequest() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Бюджета хватает только на одну часть: небольшие загрузки занимают в нем лишь прочитанное
+        ParallelMultipartUploader uploader = new ParallelMultipartUploader(minioAsyncClient, meterRegistry, bucketName,
+                DataSize.ofMegabytes(5), 4, 8, 3, DataSize.ofMegabytes(5), false);
+        GeneratedContent content = new GeneratedContent(1000, 4);
+
+        uploader.upload(content.stream(), -1, "text/plain", "parallel-test/small");
+
+        assertThat(minioClient.statObject(StatObjectArgs.builder()
+                .bucket(bucketName).object("parallel-test/small").build()).size()).isEqualTo(1000);
+        assertThat(downloadSha256("parallel-test/small")).isEqualTo(content.sha256());
+        // Без multipart-загрузки
+        assertThat(meterRegistry.get("storage.upload.parallel").tag("outcome", "success").timer().count()).isZero();
+        assertThat(meterRegistry.get("storage.upload.parallel.buffer.bytes").gauge().value()).isZero();
+        remove("parallel-test/small");
+    }
+
+    /**
+     * Пропускная способность загрузки 512 MB: последовательно (как раньше) и параллельно с разным числом частей.
+     * Результаты пишутся в лог. Запуск: {@code mvn test -Dtest=ParallelMultipartUploaderTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void measureThroughput() throws Exception {
+        long size = 512 * MB;
+
+        GeneratedContent sequential = new GeneratedContent(size, 2);
+        long started = System.nanoTime();
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object("parallel-test/sequential")
+                .stream(sequential.stream(), size, -1)
+                .build());
+        logThroughput("sequential putObject", size, System.nanoTime() - started);
+        remove("parallel-test/sequential");
+
+        for (int concurrency : new int[]{1, 4, 8}) {
+            ParallelMultipartUploader uploader = uploader(16, concurrency);
+            GeneratedContent content = new GeneratedContent(size, 3);
+            started = System.nanoTime();
+            uploader.upload(content.stream(), size, "application/octet-stream", "parallel-test/parallel");
+            logThroughput("parallel, " + concurrency + " parts at once", size, System.nanoTime() - started);
+
+            assertThat(downloadSha256("parallel-test/parallel")).isEqualTo(content.sha256());
+            remove("parallel-test/parallel");
+        }
+    }
+
+    private ParallelMultipartUploader uploader(long partSizeMb, int concurrency) {
+        return new ParallelMultipartUploader(minioAsyncClient, new SimpleMeterRegistry(), bucketName,
+                DataSize.ofMegabytes(partSizeMb), concurrency, 8, 3, DataSize.ofMegabytes(256), false);
+    }
+
+    private static void logThroughput(String mode, long size, long nanos) {
+        double seconds = nanos / 1e9;
+        log.info("{}: {} MB in {} s, {} MB/s", mode, size / MB, String.format("%.2f", seconds),
+                String.format("%.1f", size / (double) MB / seconds));
+    }
+
+    private String downloadSha256(String objectName) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream object = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucketName).object(objectName).build())) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = object.read(buffer); read >= 0; read = object.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void remove(String objectName) throws Exception {
+        minioClient.removeObject(RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+    }
+
+    /**
+     * Псевдослучайное содержимое заданного размера, которое не держится в памяти целиком.
+     * SHA-256 доступен после того, как поток прочитан до конца.
+     */
+    private static final class GeneratedContent {
+
+        private final long size;
+        private final long seed;
+        private MessageDigest digest;
+
+        GeneratedContent(long size, long seed) {
+            this.size = size;
+            this.seed = seed;
+        }
+
+        InputStream stream() throws Exception {
+            digest = MessageDigest.getInstance("SHA-256");
+            SplittableRandom random = new SplittableRandom(seed);
+            InputStream generated = new InputStream() {
+                private long remaining = size;
+
+                @Override
+                public int read() {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    if (remaining == 0) {
+                        return -1;
+                    }
+                    byte[] chunk = new byte[(int) Math.min(length, remaining)];
+                    random.nextBytes(chunk);
+                    System.arraycopy(chunk, 0, buffer, offset, chunk.length);
+                    remaining -= chunk.length;
+                    return chunk.length;
+                }
+            };
+            return new DigestInputStream(generated, digest);
+        }
+
+        String sha256() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.StorageBlob;
+import com.example.documentservice.entity.StorageDeletion;
+import com.example.documentservice.repository.DocumentRepository;
+import com.example.documentservice.repository.StorageBlobRepository;
+import com.example.documentservice.repository.StorageDeletionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StorageBlobServiceImplTest {
+
+    @Mock
+    private StorageBlobRepository storageBlobRepository;
+    @Mock
+    private FileStorageService fileStorageService;
+    @Mock
+    private DocumentRepository documentRepository;
+    @Mock
+    private StorageDeletionRepository storageDeletionRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private StorageBlobServiceImpl storageBlobService;
+
+    @Test
+    void releaseReadsStorageKeyBeforeDeletingLastReference() {
+        // Документ ссылается на LAZY-прокси: после удаления записи его уже нельзя инициализировать
+        StorageBlob blob = mock(StorageBlob.class);
+        when(blob.getId()).thenReturn(7L);
+        when(blob.getStorageKey()).thenReturn("key-7");
+        when(storageBlobRepository.deleteIfUnreferenced(7L)).thenReturn(1);
+
+        storageBlobService.release(blob);
+
+        InOrder order = inOrder(blob, storageBlobRepository);
+        order.verify(blob).getStorageKey();
+        order.verify(storageBlobRepository).deleteIfUnreferenced(7L);
+        ArgumentCaptor<StorageDeletion> deletion = ArgumentCaptor.forClass(StorageDeletion.class);
+        verify(storageDeletionRepository).save(deletion.capture());
+        assertThat(deletion.getValue().getStorageKey()).isEqualTo("key-7");
+    }
+
+    @Test
+    void releaseKeepsObjectWhileReferenced() {
+        StorageBlob blob = StorageBlob.builder().id(7L).storageKey("key-7").refCount(2).build();
+        when(storageBlobRepository.deleteIfUnreferenced(7L)).thenReturn(0);
+
+        storageBlobService.release(blob);
+
+        verify(storageBlobRepository).decrementRefCount(7L);
+        verify(storageDeletionRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.documentservice.service;
+
+import com.example.documentservice.entity.StorageDeletion;
+import com.example.documentservice.repository.StorageDeletionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageDeletionDrainerTest {
+
+    private final StorageDeletionRepository storageDeletionRepository = mock(StorageDeletionRepository.class);
+    private final FileStorageService fileStorageService = mock(FileStorageService.class);
+    private final StorageDeletionDrainer drainer =
+            new StorageDeletionDrainer(storageDeletionRepository, fileStorageService, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(drainer, "batchSize", 10);
+        ReflectionTestUtils.setField(drainer, "lease", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(drainer, "backoff", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(drainer, "maxBackoff", Duration.ofHours(1));
+    }
+
+    @Test
+    void abortsMultipartUploadBeforeDeletingObject() {
+        when(storageDeletionRepository.claimDue(anyInt(), anyLong())).thenReturn(List.of(
+                deletion(1L, "pending-key", "upload-1"),
+                deletion(2L, "plain-key", null)));
+        when(fileStorageService.deleteFiles(any())).thenReturn(List.of());
+
+        drainer.drain();
+
+        InOrder order = inOrder(fileStorageService);
+        order.verify(fileStorageService).abortMultipartUpload("pending-key", "upload-1");
+        order.verify(fileStorageService).deleteFiles(Set.of("pending-key", "plain-key"));
+        verify(storageDeletionRepository).deleteByIds(List.of(1L, 2L));
+    }
+
+    @Test
+    void retriesWholeEntryWhenAbortFails() {
+        when(storageDeletionRepository.claimDue(anyInt(), anyLong())).thenReturn(List.of(
+                deletion(1L, "pending-key", "upload-1"),
+                deletion(2L, "plain-key", null)));
+        doThrow(new RuntimeException("MinIO is unavailable"))
+                .when(fileStorageService).abortMultipartUpload("pending-key", "upload-1");
+        when(fileStorageService.deleteFiles(any())).thenReturn(List.of());
+
+        drainer.drain();
+
+        // Объект не удаляется, пока не отменена загрузка: иначе ее части остались бы без записи
+        verify(fileStorageService).deleteFiles(Set.of("plain-key"));
+        verify(storageDeletionRepository).reschedule(eq(1L), any(LocalDateTime.class), startsWith("java.lang.RuntimeException"));
+        verify(storageDeletionRepository).deleteByIds(List.of(2L));
+    }
+
+    private static StorageDeletion deletion(Long id, String storageKey, String uploadId) {
+        return StorageDeletion.builder()
+                .id(id)
+                .storageKey(storageKey)
+                .uploadId(uploadId)
+                .attempts(1)
+                .runAt(LocalDateTime.now())
+                .build();
+    }
+}
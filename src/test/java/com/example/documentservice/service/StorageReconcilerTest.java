@@ -0,0 +1,54 @@
+package com.example.documentservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageReconcilerTest {
+
+    @Test
+    void keysCompareInUtf8ByteOrder() {
+        // Символ вне BMP (суррогатная пара) больше U+FFFD в UTF-8, но меньше в UTF-16
+        String emoji = "📄";
+        String replacement = "�";
+
+        assertThat(replacement.compareTo(emoji)).isPositive();
+        assertThat(StorageReconciler.compareKeys(replacement, emoji)).isNegative();
+        assertThat(StorageReconciler.compareKeys(emoji, replacement)).isPositive();
+    }
+
+    @Test
+    void prefixSortsFirst() {
+        assertThat(StorageReconciler.compareKeys("abc", "abcd")).isNegative();
+        assertThat(StorageReconciler.compareKeys("abcd", "abc")).isPositive();
+        assertThat(StorageReconciler.compareKeys("", "a")).isNegative();
+        assertThat(StorageReconciler.compareKeys("key", "key")).isZero();
+    }
+
+    @Test
+    void matchesByteOrderOnRandomKeys() {
+        Random random = new Random(42);
+        int[] alphabet = {'-', '.', '0', 'A', 'Z', '_', 'a', 'z', 0x44F, 0x4E2D, 0xFFFD, 0x1F4C4, 0x10FFFF};
+        for (int i = 0; i < 10_000; i++) {
+            String a = randomKey(random, alphabet);
+            String b = randomKey(random, alphabet);
+
+            int expected = Integer.signum(Arrays.compareUnsigned(
+                    a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)));
+            assertThat(Integer.signum(StorageReconciler.compareKeys(a, b))).as("%s vs %s", a, b).isEqualTo(expected);
+        }
+    }
+
+    private static String randomKey(Random random, int[] alphabet) {
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            key.appendCodePoint(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return key.toString();
+    }
+}